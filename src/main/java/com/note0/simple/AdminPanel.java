@@ -3,24 +3,33 @@ package com.note0.simple;
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
-import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.List;
 
 public class AdminPanel extends JPanel {
 
     private final SubjectDAO subjectDAO;
     private final MaterialDAO materialDAO;
-    private final CloudinaryService cloudinaryService;
+    private final StorageService storageService;
 
     private JTable subjectTable;
     private DefaultTableModel subjectTableModel;
     private JTable materialTable;
-    private DefaultTableModel materialTableModel;
+    private MaterialTableModel materialTableModel;
+    // True while the material table lists only pending uploads, false for "Show All"
+    private boolean showingPending = true;
 
-    public AdminPanel(SubjectDAO subjectDAO, MaterialDAO materialDAO, CloudinaryService cloudinaryService) {
+    public AdminPanel(SubjectDAO subjectDAO, MaterialDAO materialDAO, StorageService storageService) {
+        this(subjectDAO, materialDAO, storageService, null);
+    }
+
+    /**
+     * @param preloaded Subjects and pending materials fetched by MainAppLoader, or null to load them here
+     */
+    public AdminPanel(SubjectDAO subjectDAO, MaterialDAO materialDAO, StorageService storageService, MainAppData preloaded) {
         this.subjectDAO = subjectDAO;
         this.materialDAO = materialDAO;
-        this.cloudinaryService = cloudinaryService;
+        this.storageService = storageService;
 
         setLayout(new GridLayout(2, 1, 15, 15)); // Two main sections: Subjects and Materials
         setBackground(UITheme.APP_BACKGROUND);
@@ -60,7 +69,10 @@ public class AdminPanel extends JPanel {
 
         addSubjectButton.addActionListener(e -> addSubject());
         deleteSubjectButton.addActionListener(e -> deleteSubject());
-        refreshSubjectsButton.addActionListener(e -> loadSubjects());
+        refreshSubjectsButton.addActionListener(e -> {
+            subjectDAO.invalidateCache(); // Pick up changes made by other admins
+            loadSubjects();
+        });
 
         // --- Materials Panel ---
         JPanel materialsPanel = new JPanel(new BorderLayout(10, 10));
@@ -75,8 +87,11 @@ public class AdminPanel extends JPanel {
         materialTitle.setBorder(BorderFactory.createEmptyBorder(10, 0, 10, 0));
         materialsPanel.add(materialTitle, BorderLayout.NORTH);
 
-        materialTableModel = new DefaultTableModel(new String[]{"ID", "Title", "Uploader", "Subject", "Status"}, 0);
+        materialTableModel = new MaterialTableModel(MaterialTableModel.Column.ID, MaterialTableModel.Column.TITLE,
+                MaterialTableModel.Column.UPLOADER, MaterialTableModel.Column.SUBJECT, MaterialTableModel.Column.STATUS);
         materialTable = new JTable(materialTableModel);
+        MaterialTableModel.install(materialTable);
+        materialTable.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
         materialsPanel.add(new JScrollPane(materialTable), BorderLayout.CENTER);
 
         JPanel materialButtonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
@@ -109,47 +124,47 @@ public class AdminPanel extends JPanel {
         add(subjectsPanel);
         add(materialsPanel);
 
-        loadSubjects();
-        loadPendingMaterials();
+        if (preloaded != null && preloaded.getSubjectCatalog() != null) {
+            showSubjects(preloaded.getSubjectCatalog().getSubjects());
+        } else {
+            loadSubjects();
+        }
+        if (preloaded != null && preloaded.getPendingMaterials() != null) {
+            showMaterials(preloaded.getPendingMaterials());
+        } else {
+            loadPendingMaterials();
+        }
     }
 
     private void loadSubjects() {
 // ... (existing code, no changes) ...
+        AsyncDAO.onEdt(AsyncDAO.supply(() -> subjectDAO.getAllSubjects()), this::showSubjects,
+                e -> JOptionPane.showMessageDialog(this, "Error loading subjects: " + e.getMessage(), "DB Error", JOptionPane.ERROR_MESSAGE));
+    }
+
+    private void showSubjects(List<Subject> subjects) {
         subjectTableModel.setRowCount(0);
-        try {
-            List<Subject> subjects = subjectDAO.getAllSubjects();
-            for (Subject subject : subjects) {
-                subjectTableModel.addRow(new Object[]{subject.getId(), subject.getName(), subject.getBranch(), subject.getSemester()});
-            }
-        } catch (SQLException e) {
-            JOptionPane.showMessageDialog(this, "Error loading subjects: " + e.getMessage(), "DB Error", JOptionPane.ERROR_MESSAGE);
+        for (Subject subject : subjects) {
+            subjectTableModel.addRow(new Object[]{subject.getId(), subject.getName(), subject.getBranch(), subject.getSemester()});
         }
     }
 
     private void loadPendingMaterials() {
 // ... (existing code, no changes) ...
-        materialTableModel.setRowCount(0);
-        try {
-            List<Material> materials = materialDAO.getPendingMaterials();
-            for (Material material : materials) {
-                materialTableModel.addRow(new Object[]{material.getId(), material.getTitle(), material.getUploaderName(), material.getSubjectName(), material.getApprovalStatus()});
-            }
-        } catch (SQLException e) {
-            JOptionPane.showMessageDialog(this, "Error loading pending materials: " + e.getMessage(), "DB Error", JOptionPane.ERROR_MESSAGE);
-        }
+        showingPending = true;
+        AsyncDAO.onEdt(AsyncDAO.supply(() -> materialDAO.getPendingMaterials()), this::showMaterials,
+                e -> JOptionPane.showMessageDialog(this, "Error loading pending materials: " + e.getMessage(), "DB Error", JOptionPane.ERROR_MESSAGE));
     }
     
     private void loadAllMaterials() {
 // ... (existing code, no changes) ...
-        materialTableModel.setRowCount(0);
-        try {
-            List<Material> materials = materialDAO.getAllMaterialsForAdmin();
-            for (Material material : materials) {
-                materialTableModel.addRow(new Object[]{material.getId(), material.getTitle(), material.getUploaderName(), material.getSubjectName(), material.getApprovalStatus()});
-            }
-        } catch (SQLException e) {
-            JOptionPane.showMessageDialog(this, "Error loading all materials: " + e.getMessage(), "DB Error", JOptionPane.ERROR_MESSAGE);
-        }
+        showingPending = false;
+        AsyncDAO.onEdt(AsyncDAO.supply(() -> materialDAO.getAllMaterialsForAdmin()), this::showMaterials,
+                e -> JOptionPane.showMessageDialog(this, "Error loading all materials: " + e.getMessage(), "DB Error", JOptionPane.ERROR_MESSAGE));
+    }
+
+    private void showMaterials(List<Material> materials) {
+        materialTableModel.setMaterials(materials);
     }
 
     private void addSubject() {
@@ -225,14 +240,15 @@ public class AdminPanel extends JPanel {
                 return;
             }
 
-            try {
-                subjectDAO.addSubject(name, branch, semester);
+            saveButton.setEnabled(false);
+            AsyncDAO.onEdt(AsyncDAO.run(() -> subjectDAO.addSubject(name, branch, semester)), done -> {
                 JOptionPane.showMessageDialog(addSubjectDialog, "Subject added successfully!", "Success", JOptionPane.INFORMATION_MESSAGE);
                 addSubjectDialog.dispose();
                 loadSubjects(); // Refresh the subjects list
-            } catch (SQLException ex) {
+            }, ex -> {
+                saveButton.setEnabled(true);
                 JOptionPane.showMessageDialog(addSubjectDialog, "Error adding subject: " + ex.getMessage(), "Database Error", JOptionPane.ERROR_MESSAGE);
-            }
+            });
         });
 
         cancelButton.addActionListener(e -> addSubjectDialog.dispose());
@@ -254,84 +270,75 @@ public class AdminPanel extends JPanel {
             "This will also delete all materials associated with this subject.", 
             "Confirm Deletion", JOptionPane.YES_NO_OPTION);
         if (confirm == JOptionPane.YES_OPTION) {
-            try {
-                subjectDAO.deleteSubject(id);
+            AsyncDAO.onEdt(AsyncDAO.run(() -> subjectDAO.deleteSubject(id)), done -> {
                 JOptionPane.showMessageDialog(this, "Subject deleted successfully!", "Success", JOptionPane.INFORMATION_MESSAGE);
                 loadSubjects(); // Refresh the list
-            } catch (Exception ex) {
-                JOptionPane.showMessageDialog(this, "Error deleting subject: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-            }
+            }, ex -> JOptionPane.showMessageDialog(this, "Error deleting subject: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE));
         }
     }
 
     private void deleteMaterial() {
-// ... (existing code, no changes) ...
-        int selectedRow = materialTable.getSelectedRow();
-        if (selectedRow < 0) {
-            JOptionPane.showMessageDialog(this, "Please select a material to delete.", "Info", JOptionPane.INFORMATION_MESSAGE);
+        List<Long> ids = selectedMaterialIds();
+        if (ids.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "Please select one or more materials to delete.", "Info", JOptionPane.INFORMATION_MESSAGE);
             return;
         }
-        Long id = (Long) materialTableModel.getValueAt(selectedRow, 0);
-        String materialTitle = (String) materialTableModel.getValueAt(selectedRow, 1);
         int confirm = JOptionPane.showConfirmDialog(this, 
-            "Are you sure you want to delete the material '" + materialTitle + "'?\n\n" +
+            "Are you sure you want to delete " + describeSelection(ids) + "?\n\n" +
             "This will remove the material from the database.\n" +
-            "The uploaded file will remain in Cloudinary storage.", 
+            "The uploaded file will remain in storage.", 
             "Confirm Deletion", JOptionPane.YES_NO_OPTION);
         if (confirm == JOptionPane.YES_OPTION) {
-            try {
-                boolean success = materialDAO.deleteMaterialWithFile(id, cloudinaryService);
-                if (success) {
-                    JOptionPane.showMessageDialog(this, "Material deleted from database successfully!", "Success", JOptionPane.INFORMATION_MESSAGE);
-                } else {
-                    JOptionPane.showMessageDialog(this, "Error deleting material from database.", "Error", JOptionPane.ERROR_MESSAGE);
-                }
-                loadPendingMaterials(); // Refresh the list
-            } catch (Exception ex) {
-                JOptionPane.showMessageDialog(this, "Error deleting material: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-            }
+            AsyncDAO.onEdt(AsyncDAO.supply(() -> materialDAO.deleteMaterials(ids)), deleted -> {
+                materialTableModel.removeMaterials(deleted);
+                JOptionPane.showMessageDialog(this, deleted.size() + " material(s) deleted from database successfully!", "Success", JOptionPane.INFORMATION_MESSAGE);
+            }, ex -> JOptionPane.showMessageDialog(this, "Error deleting material: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE));
         }
     }
     
     private void approveMaterial() {
-// ... (existing code, no changes) ...
-        int selectedRow = materialTable.getSelectedRow();
-        if (selectedRow < 0) {
-            JOptionPane.showMessageDialog(this, "Please select a material to approve.", "Info", JOptionPane.INFORMATION_MESSAGE);
-            return;
-        }
-        Long id = (Long) materialTableModel.getValueAt(selectedRow, 0);
-        String title = (String) materialTableModel.getValueAt(selectedRow, 1);
-        int confirm = JOptionPane.showConfirmDialog(this, "Are you sure you want to approve '" + title + "'?", "Confirm Approval", JOptionPane.YES_NO_OPTION);
-        if (confirm == JOptionPane.YES_OPTION) {
-            try {
-                materialDAO.updateApprovalStatus(id, "APPROVED");
-                JOptionPane.showMessageDialog(this, "Material approved successfully!", "Success", JOptionPane.INFORMATION_MESSAGE);
-                loadPendingMaterials(); // Refresh the list
-            } catch (Exception ex) {
-                JOptionPane.showMessageDialog(this, "Error approving material: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-            }
-        }
+        moderateSelected("APPROVED", "approve", "approved", "Confirm Approval");
     }
     
     private void rejectMaterial() {
-// ... (existing code, no changes) ...
-        int selectedRow = materialTable.getSelectedRow();
-        if (selectedRow < 0) {
-            JOptionPane.showMessageDialog(this, "Please select a material to reject.", "Info", JOptionPane.INFORMATION_MESSAGE);
+        moderateSelected("REJECTED", "reject", "rejected", "Confirm Rejection");
+    }
+
+    /**
+     * Sets the status of every selected material in one statement and patches the table in place.
+     */
+    private void moderateSelected(String status, String verb, String pastTense, String confirmTitle) {
+        List<Long> ids = selectedMaterialIds();
+        if (ids.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "Please select one or more materials to " + verb + ".", "Info", JOptionPane.INFORMATION_MESSAGE);
             return;
         }
-        Long id = (Long) materialTableModel.getValueAt(selectedRow, 0);
-        String title = (String) materialTableModel.getValueAt(selectedRow, 1);
-        int confirm = JOptionPane.showConfirmDialog(this, "Are you sure you want to reject '" + title + "'?", "Confirm Rejection", JOptionPane.YES_NO_OPTION);
+        int confirm = JOptionPane.showConfirmDialog(this, "Are you sure you want to " + verb + " " + describeSelection(ids) + "?", confirmTitle, JOptionPane.YES_NO_OPTION);
         if (confirm == JOptionPane.YES_OPTION) {
-            try {
-                materialDAO.updateApprovalStatus(id, "REJECTED");
-                JOptionPane.showMessageDialog(this, "Material rejected successfully!", "Success", JOptionPane.INFORMATION_MESSAGE);
-                loadPendingMaterials(); // Refresh the list
-            } catch (Exception ex) {
-                JOptionPane.showMessageDialog(this, "Error rejecting material: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-            }
+            AsyncDAO.onEdt(AsyncDAO.supply(() -> materialDAO.updateApprovalStatus(ids, status)), updated -> {
+                if (showingPending) {
+                    materialTableModel.removeMaterials(updated); // No longer pending
+                } else {
+                    materialTableModel.setApprovalStatus(updated, status);
+                }
+                JOptionPane.showMessageDialog(this, updated.size() + " material(s) " + pastTense + " successfully!", "Success", JOptionPane.INFORMATION_MESSAGE);
+            }, ex -> JOptionPane.showMessageDialog(this, "Error updating materials: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE));
+        }
+    }
+
+    private List<Long> selectedMaterialIds() {
+        List<Long> ids = new ArrayList<>();
+        for (int viewRow : materialTable.getSelectedRows()) {
+            ids.add(materialTableModel.getMaterialAt(materialTable.convertRowIndexToModel(viewRow)).getId());
+        }
+        return ids;
+    }
+
+    private String describeSelection(List<Long> ids) {
+        if (ids.size() == 1) {
+            int row = materialTable.convertRowIndexToModel(materialTable.getSelectedRow());
+            return "the material '" + materialTableModel.getMaterialAt(row).getTitle() + "'";
         }
+        return ids.size() + " materials";
     }
 }
@@ -0,0 +1,38 @@
+package com.note0.simple;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Locates the directory where Note0 keeps its local files (upload queue, caches).
+ * Defaults to ~/.note0 and can be moved with -Dnote0.home=/some/dir.
+ */
+public final class AppPaths {
+
+    private AppPaths() {
+    }
+
+    /**
+     * @return The Note0 home directory; it is not created by this call.
+     */
+    public static Path home() {
+        String configured = System.getProperty("note0.home");
+        if (configured != null && !configured.isBlank()) {
+            return Paths.get(configured);
+        }
+        return Paths.get(System.getProperty("user.home"), ".note0");
+    }
+
+    /**
+     * Resolves a path inside the home directory, creating the directories leading up to it.
+     * @param first The first path element, e.g. "uploads.properties" or "cache"
+     * @throws IOException if the directories cannot be created
+     */
+    public static Path resolve(String first, String... more) throws IOException {
+        Path path = home().resolve(Paths.get(first, more));
+        Files.createDirectories(path.getParent());
+        return path;
+    }
+}
@@ -0,0 +1,166 @@
+package com.note0.simple;
+
+import javax.swing.SwingUtilities;
+import java.lang.reflect.Method;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Runs DAO calls (MaterialDAO, UserDAO, SubjectDAO, or anything else that does I/O)
+ * off the Swing event thread and hands the results back to it.
+ *
+ * Typical use from a panel:
+ * <pre>
+ *     AsyncDAO.onEdt(AsyncDAO.supply(() -&gt; materialDAO.getPendingMaterials()),
+ *             materials -&gt; fillTable(materials),
+ *             error -&gt; showError(error));
+ * </pre>
+ *
+ * On Java 21 and newer each call runs on its own virtual thread; on Java 17 a small
+ * pool of platform threads is used instead. The connection pool bounds how many
+ * queries actually run at once either way.
+ */
+public final class AsyncDAO {
+
+    /**
+     * A unit of blocking work, usually one DAO call.
+     */
+    @FunctionalInterface
+    public interface Call<T> {
+        T call() throws Exception;
+    }
+
+    /**
+     * Blocking work without a result.
+     */
+    @FunctionalInterface
+    public interface Action {
+        void run() throws Exception;
+    }
+
+    /** Runs callbacks on the Swing event dispatch thread. */
+    public static final Executor EDT = SwingUtilities::invokeLater;
+
+    private static final ExecutorService executor = createExecutor();
+
+    private AsyncDAO() {
+    }
+
+    /**
+     * Starts the call in the background.
+     * Cancelling the returned future interrupts the call if it is still running,
+     * and cancels the SQL statement it is executing (see QueryCanceller).
+     * @return A future completed with the call's result or exception.
+     */
+    public static <T> CompletableFuture<T> supply(Call<T> call) {
+        TaskFuture<T> result = new TaskFuture<>();
+        result.task = executor.submit(() -> {
+            if (result.isDone()) {
+                return; // Cancelled before it started
+            }
+            result.canceller.bind();
+            try {
+                result.complete(call.call());
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            } finally {
+                result.canceller.unbind();
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Starts the action in the background.
+     * @return A future completed when the action has finished.
+     */
+    public static CompletableFuture<Void> run(Action action) {
+        return supply(() -> {
+            action.run();
+            return null;
+        });
+    }
+
+    /**
+     * Delivers the outcome of a future to the event dispatch thread.
+     * Cancelled futures call neither callback, since whoever cancelled them no longer wants the result.
+     * @param future The background work
+     * @param onSuccess Receives the result on the EDT
+     * @param onError Receives the underlying exception on the EDT
+     */
+    public static <T> void onEdt(CompletableFuture<T> future, Consumer<? super T> onSuccess, Consumer<Throwable> onError) {
+        future.whenCompleteAsync((result, error) -> {
+            if (error == null) {
+                onSuccess.accept(result);
+                return;
+            }
+            Throwable cause = unwrap(error);
+            if (!(cause instanceof CancellationException)) {
+                onError.accept(cause);
+            }
+        }, EDT);
+    }
+
+    /**
+     * Strips the CompletionException/ExecutionException wrappers added by the futures.
+     */
+    public static Throwable unwrap(Throwable error) {
+        Throwable cause = error;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+
+    private static ExecutorService createExecutor() {
+        try {
+            // Looked up reflectively so the code still compiles and runs on Java 17
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            System.out.println("AsyncDAO: Using virtual threads");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            int threads = Integer.getInteger("note0.async.threads", 8);
+            AtomicInteger counter = new AtomicInteger();
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(), r -> {
+                        Thread t = new Thread(r, "note0-async-" + counter.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    });
+            pool.allowCoreThreadTimeOut(true);
+            return pool;
+        }
+    }
+
+    /**
+     * A future that also cancels the underlying task and its SQL statement when it is cancelled.
+     */
+    private static class TaskFuture<T> extends CompletableFuture<T> {
+        volatile Future<?> task;
+        final QueryCanceller canceller = new QueryCanceller();
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            if (cancelled) {
+                canceller.cancel();
+                Future<?> running = task;
+                if (running != null) {
+                    running.cancel(true);
+                }
+            }
+            return cancelled;
+        }
+    }
+}
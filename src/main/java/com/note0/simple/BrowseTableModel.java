@@ -0,0 +1,165 @@
+package com.note0.simple;
+
+import javax.swing.*;
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Table model for the Browse tab that loads materials one page at a time.
+ * Only the first page is fetched up front; further pages are fetched in the
+ * background when the user scrolls close to the last loaded row.
+ */
+public class BrowseTableModel extends MaterialTableModel {
+
+    /**
+     * Fetches the page that follows the given cursor (null for the first page).
+     */
+    @FunctionalInterface
+    public interface PageLoader {
+        MaterialPage loadPage(String cursor) throws SQLException;
+    }
+
+    public static final int PAGE_SIZE = Integer.getInteger("note0.browse.pageSize", 50);
+    // Start fetching the next page when the user is this many rows away from the end
+    private static final int PREFETCH_ROWS = Integer.getInteger("note0.browse.prefetchRows", 15);
+
+    private PageLoader loader;
+    private String nextCursor;
+    private boolean hasMore;
+    private boolean loading;
+    // Incremented on every reset so results of an outdated search are ignored
+    private int generation;
+    private Consumer<Throwable> errorHandler = Throwable::printStackTrace;
+    private Runnable firstPageListener;
+    private CompletableFuture<MaterialPage> pendingPage;
+
+    public BrowseTableModel() {
+        super(Column.TITLE, Column.SUBJECT, Column.RATING, Column.UPLOADER);
+    }
+
+    public void setErrorHandler(Consumer<Throwable> errorHandler) {
+        this.errorHandler = errorHandler;
+    }
+
+    /**
+     * @param firstPageListener Called on the EDT once the first page after a reset is shown
+     */
+    public void setFirstPageListener(Runnable firstPageListener) {
+        this.firstPageListener = firstPageListener;
+    }
+
+    /**
+     * @return true while a page is being fetched.
+     */
+    public boolean isLoading() {
+        return loading;
+    }
+
+    /**
+     * Drops all loaded rows and starts loading from the first page of the given source.
+     * @param loader The source of pages, usually a MaterialDAO query with the current filters
+     */
+    public void reset(PageLoader loader) {
+        reset(loader, null);
+    }
+
+    /**
+     * Like {@link #reset(PageLoader)}, but shows an already fetched first page instead of loading it.
+     * @param firstPage The first page of the loader's results, or null to load it
+     */
+    public void reset(PageLoader loader, MaterialPage firstPage) {
+        if (!SwingUtilities.isEventDispatchThread()) {
+            SwingUtilities.invokeLater(() -> reset(loader, firstPage));
+            return;
+        }
+        generation++;
+        if (pendingPage != null) {
+            pendingPage.cancel(true); // Results for the old filters are no longer wanted
+            pendingPage = null;
+        }
+        this.loader = loader;
+        this.nextCursor = null;
+        this.hasMore = true;
+        this.loading = false;
+        clear();
+        if (firstPage != null) {
+            appendPage(firstPage);
+        } else {
+            loadNextPage();
+        }
+    }
+
+    /**
+     * Loads the next page if the last visible row is close enough to the end of the loaded rows.
+     * @param lastVisibleRow The index of the last row currently visible in the table
+     */
+    public void loadMoreIfNeeded(int lastVisibleRow) {
+        if (lastVisibleRow >= materials.size() - PREFETCH_ROWS) {
+            loadNextPage();
+        }
+    }
+
+    /**
+     * Connects the model to the table's scroll pane so that scrolling near the end fetches more rows.
+     */
+    public void installOn(JTable table, JScrollPane scrollPane) {
+        Runnable check = () -> {
+            // A hidden table has no visible rows, so it must not pull in pages on its own
+            if (table.isShowing()) {
+                loadMoreIfNeeded(lastVisibleRow(table));
+            }
+        };
+        scrollPane.getVerticalScrollBar().addAdjustmentListener(e -> check.run());
+        // If a page does not fill the viewport there is nothing to scroll, so check again after each load
+        addTableModelListener(e -> SwingUtilities.invokeLater(check));
+        table.addHierarchyListener(e -> {
+            if ((e.getChangeFlags() & java.awt.event.HierarchyEvent.SHOWING_CHANGED) != 0) {
+                SwingUtilities.invokeLater(check);
+            }
+        });
+    }
+
+    private static int lastVisibleRow(JTable table) {
+        java.awt.Rectangle visible = table.getVisibleRect();
+        int row = table.rowAtPoint(new java.awt.Point(0, visible.y + visible.height - 1));
+        // Below the last row means every loaded row is visible
+        return row < 0 ? table.getRowCount() - 1 : row;
+    }
+
+    private void loadNextPage() {
+        if (loading || !hasMore || loader == null) {
+            return;
+        }
+        loading = true;
+        final int requestGeneration = generation;
+        final PageLoader requestLoader = loader;
+        final String requestCursor = nextCursor;
+
+        pendingPage = AsyncDAO.supply(() -> requestLoader.loadPage(requestCursor));
+        AsyncDAO.onEdt(pendingPage, page -> {
+            if (requestGeneration != generation) {
+                return; // The filters changed while this page was loading
+            }
+            loading = false;
+            boolean firstPage = requestCursor == null;
+            appendPage(page);
+            if (firstPage && firstPageListener != null) {
+                firstPageListener.run();
+            }
+        }, error -> {
+            if (requestGeneration != generation) {
+                return;
+            }
+            loading = false;
+            hasMore = false;
+            errorHandler.accept(error);
+        });
+    }
+
+    private void appendPage(MaterialPage page) {
+        nextCursor = page.getNextCursor();
+        hasMore = page.hasMore();
+        addMaterials(page.getMaterials());
+    }
+}
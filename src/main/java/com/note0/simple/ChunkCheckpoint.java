@@ -0,0 +1,64 @@
+package com.note0.simple;
+
+import java.io.IOException;
+
+/**
+ * Where a chunked upload stands, kept by the caller so that an interrupted upload can
+ * continue from the last chunk the server acknowledged instead of starting over.
+ */
+public interface ChunkCheckpoint {
+
+    /**
+     * @return The X-Unique-Upload-Id of the upload in progress, or null if none was started.
+     */
+    String getUploadId();
+
+    /**
+     * @return Size and modification time of the file when the upload started, to detect a changed file.
+     */
+    String getFingerprint();
+
+    /**
+     * @return The number of bytes, from the start of the file, the server has acknowledged.
+     */
+    long getAcknowledgedBytes();
+
+    /**
+     * Records progress after every acknowledged chunk (and with 0 bytes when an upload starts).
+     * @throws IOException if the checkpoint cannot be stored; the upload then stops
+     */
+    void acknowledged(String uploadId, String fingerprint, long bytes) throws IOException;
+
+    /**
+     * @return A checkpoint that lives only as long as the upload call, for callers that do not resume.
+     */
+    static ChunkCheckpoint inMemory() {
+        return new ChunkCheckpoint() {
+            private String uploadId;
+            private String fingerprint;
+            private long bytes;
+
+            @Override
+            public String getUploadId() {
+                return uploadId;
+            }
+
+            @Override
+            public String getFingerprint() {
+                return fingerprint;
+            }
+
+            @Override
+            public long getAcknowledgedBytes() {
+                return bytes;
+            }
+
+            @Override
+            public void acknowledged(String uploadId, String fingerprint, long bytes) {
+                this.uploadId = uploadId;
+                this.fingerprint = fingerprint;
+                this.bytes = bytes;
+            }
+        };
+    }
+}
@@ -1,14 +1,11 @@
 package com.note0.simple;
 
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.io.File;
 import java.sql.SQLException;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 public class DashboardPanel extends JPanel {
 
@@ -16,30 +13,50 @@ public class DashboardPanel extends JPanel {
     private final User loggedInUser;
     private final MaterialDAO materialDAO;
     private final SubjectDAO subjectDAO;
-    private final CloudinaryService cloudinaryService;
+    private final StorageService storageService;
 
-    private List<Subject> allSubjects;
-    private Map<String, Long> subjectNameToIdMap = new HashMap<>();
+    private SubjectCatalog subjectCatalog;
+
+    // Typing only searches once the user has paused for this long
+    private static final int SEARCH_DEBOUNCE_MS = Integer.getInteger("note0.search.debounceMs", 250);
 
     private JTable materialsTable;
-    private DefaultTableModel tableModel;
-    private List<Material> currentMaterials = new ArrayList<>();
+    private BrowseTableModel tableModel;
+
+    private final SearchStats searchStats = new SearchStats();
+    private long searchStartNanos; // Input change behind the search being loaded, 0 if none
+    private String searchQuery;
 
-    public DashboardPanel(MainFrame mainFrame, User user, MaterialDAO materialDAO, SubjectDAO subjectDAO, CloudinaryService cloudinaryService) {
+    public DashboardPanel(MainFrame mainFrame, User user, MaterialDAO materialDAO, SubjectDAO subjectDAO, StorageService storageService) {
+        this(mainFrame, user, materialDAO, subjectDAO, storageService, null);
+    }
+
+    /**
+     * @param preloaded Subjects, first Browse page and uploads fetched by MainAppLoader, or null to load them here
+     */
+    public DashboardPanel(MainFrame mainFrame, User user, MaterialDAO materialDAO, SubjectDAO subjectDAO, StorageService storageService, MainAppData preloaded) {
         this.mainFrame = mainFrame;
         this.loggedInUser = user;
         this.materialDAO = materialDAO;
         this.subjectDAO = subjectDAO;
-        this.cloudinaryService = cloudinaryService;
+        this.storageService = storageService;
 
         setLayout(new BorderLayout());
         setBackground(UITheme.APP_BACKGROUND); // Set main background
 
-        JTabbedPane tabbedPane = new JTabbedPane();
+        // Upload and My Uploads are only built (and queried) once they are opened
+        LazyTabbedPane tabbedPane = new LazyTabbedPane();
         tabbedPane.setFont(UITheme.LABEL_FONT);
-        tabbedPane.addTab("Browse Materials", createBrowsePanel());
-        tabbedPane.addTab("Upload Material", createUploadPanel());
-        tabbedPane.addTab("My Uploads", createMyUploadsPanel());
+        tabbedPane.addTab("Browse Materials", createBrowsePanel(preloaded));
+        tabbedPane.addLazyTab("Upload Material", this::createUploadPanel);
+        if (preloaded != null && preloaded.getMyUploads() != null) {
+            tabbedPane.addTab("My Uploads", createMyUploadsPanel(preloaded.getMyUploads()));
+        } else {
+            tabbedPane.addLazyTab("My Uploads",
+                    () -> AsyncDAO.supply(() -> materialDAO.getMaterialsByUser(loggedInUser.getId())),
+                    this::createMyUploadsPanel);
+        }
+        tabbedPane.prewarmConfigured();
 
         add(tabbedPane, BorderLayout.CENTER);
         
@@ -51,11 +68,9 @@ public class DashboardPanel extends JPanel {
         southPanel.setBackground(UITheme.APP_BACKGROUND);
         southPanel.add(backButton);
         add(southPanel, BorderLayout.SOUTH);
-
-        loadAndCacheSubjects(); // Load subjects once
     }
 
-    private JPanel createBrowsePanel() {
+    private JPanel createBrowsePanel(MainAppData preloaded) {
         JPanel panel = new JPanel(new BorderLayout(10, 10));
         panel.setBackground(UITheme.APP_BACKGROUND);
         panel.setBorder(UITheme.APP_PADDING);
@@ -65,7 +80,7 @@ public class DashboardPanel extends JPanel {
         filterPanel.setBackground(UITheme.APP_BACKGROUND);
         JTextField searchField = new JTextField(20);
         JComboBox<String> subjectFilterComboBox = new JComboBox<>();
-        JButton filterButton = new JButton("Search / Refresh");
+        JButton filterButton = new JButton("Refresh");
         UITheme.stylePrimaryButton(filterButton);
 
         filterPanel.add(new JLabel("Search:"));
@@ -74,32 +89,72 @@ public class DashboardPanel extends JPanel {
         filterPanel.add(subjectFilterComboBox);
         filterPanel.add(filterButton);
 
-        // Materials Table
-        String[] columnNames = {"Title", "Subject", "Rating", "Uploader"};
-        tableModel = new DefaultTableModel(columnNames, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false; // Make table cells non-editable
+        // Materials Table (rows are loaded page by page as the user scrolls)
+        tableModel = new BrowseTableModel();
+        tableModel.setErrorHandler(e -> JOptionPane.showMessageDialog(this, "Could not load materials: " + e.getMessage(), "Database Error", JOptionPane.ERROR_MESSAGE));
+        tableModel.setFirstPageListener(() -> {
+            if (searchStartNanos != 0) {
+                searchStats.recordCompleted(searchQuery, searchStartNanos);
+                searchStartNanos = 0;
             }
-        };
+        });
         materialsTable = new JTable(tableModel);
+        MaterialTableModel.install(materialsTable); // Sorting only reorders the rows loaded so far
+        MaterialTableModel.installThumbnails(materialsTable);
+        JScrollPane materialsScrollPane = new JScrollPane(materialsTable);
+        tableModel.installOn(materialsTable, materialsScrollPane);
         materialsTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
         materialsTable.addMouseListener(new java.awt.event.MouseAdapter() {
             public void mouseClicked(java.awt.event.MouseEvent evt) {
                 if (evt.getClickCount() == 2 && materialsTable.getSelectedRow() != -1) {
                     int modelRow = materialsTable.convertRowIndexToModel(materialsTable.getSelectedRow());
-                    Material material = currentMaterials.get(modelRow);
+                    Material material = tableModel.getMaterialAt(modelRow);
                     openMaterial(material);
                 }
             }
         });
 
         // Populate filters and initial data
-        loadAndCacheSubjects();
+        loadAndCacheSubjects(preloaded != null ? preloaded.getSubjectCatalog() : null);
         populateSubjectFilter(subjectFilterComboBox);
-        loadMaterials(searchField.getText(), (String) subjectFilterComboBox.getSelectedItem());
+        String initialSubject = (String) subjectFilterComboBox.getSelectedItem();
+        tableModel.reset(cursor -> materialDAO.getMaterialsPage(null, initialSubject, cursor, BrowseTableModel.PAGE_SIZE),
+                preloaded != null ? preloaded.getFirstBrowsePage() : null);
+
+        // Search as the user types: each keystroke restarts the debounce timer, and a new search
+        // cancels the one still running, so only the latest input's results are ever shown
+        Runnable search = () -> loadMaterials(searchField.getText(), (String) subjectFilterComboBox.getSelectedItem());
+        Timer searchTimer = new Timer(SEARCH_DEBOUNCE_MS, e -> search.run());
+        searchTimer.setRepeats(false);
+        searchField.getDocument().addDocumentListener(new javax.swing.event.DocumentListener() {
+            @Override
+            public void insertUpdate(javax.swing.event.DocumentEvent e) {
+                inputChanged(searchTimer);
+            }
 
-        filterButton.addActionListener(e -> loadMaterials(searchField.getText(), (String) subjectFilterComboBox.getSelectedItem()));
+            @Override
+            public void removeUpdate(javax.swing.event.DocumentEvent e) {
+                inputChanged(searchTimer);
+            }
+
+            @Override
+            public void changedUpdate(javax.swing.event.DocumentEvent e) {
+            }
+        });
+        // Added after the combo box is filled, so populating it does not trigger searches
+        subjectFilterComboBox.addActionListener(e -> {
+            searchTimer.stop();
+            searchStartNanos = System.nanoTime();
+            search.run();
+        });
+        searchField.addActionListener(e -> {
+            searchTimer.stop();
+            search.run();
+        });
+        filterButton.addActionListener(e -> {
+            searchTimer.stop();
+            search.run();
+        });
 
         // Action buttons panel
         JPanel actionPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
@@ -116,7 +171,7 @@ public class DashboardPanel extends JPanel {
         actionPanel.add(viewButton);
 
         panel.add(filterPanel, BorderLayout.NORTH);
-        panel.add(new JScrollPane(materialsTable), BorderLayout.CENTER);
+        panel.add(materialsScrollPane, BorderLayout.CENTER);
         panel.add(actionPanel, BorderLayout.SOUTH);
         return panel;
     }
@@ -205,18 +260,28 @@ public class DashboardPanel extends JPanel {
         });
 
         wrapperPanel.add(panel, new GridBagConstraints()); // Add card to wrapper
+
+        // Uploads run in the background; the queue below shows their progress
+        GridBagConstraints queueConstraints = new GridBagConstraints();
+        queueConstraints.gridx = 0;
+        queueConstraints.gridy = 1;
+        queueConstraints.insets = new Insets(20, 0, 0, 0);
+        wrapperPanel.add(new UploadQueuePanel(mainFrame.getUploadManager(), loggedInUser), queueConstraints);
         return wrapperPanel; // Return wrapper
     }
 
-    private void loadAndCacheSubjects() {
+    private void loadAndCacheSubjects(SubjectCatalog preloaded) {
 // ... (existing code, no changes) ...
+        if (preloaded != null) {
+            subjectCatalog = preloaded;
+            return;
+        }
         try {
-            allSubjects = subjectDAO.getAllSubjects();
-            subjectNameToIdMap.clear();
-            allSubjects.forEach(subject -> subjectNameToIdMap.put(subject.getName(), subject.getId()));
+            // Shared, cached snapshot; only the first panel to ask hits the database
+            subjectCatalog = subjectDAO.getCatalog();
         } catch (SQLException e) {
             JOptionPane.showMessageDialog(this, "Could not load subjects: " + e.getMessage(), "Database Error", JOptionPane.ERROR_MESSAGE);
-            allSubjects = new ArrayList<>();
+            subjectCatalog = new SubjectCatalog(new ArrayList<>());
         }
     }
     
@@ -224,81 +289,71 @@ public class DashboardPanel extends JPanel {
 // ... (existing code, no changes) ...
         comboBox.removeAllItems();
         comboBox.addItem("All Subjects");
-        allSubjects.stream().map(Subject::getName).distinct().sorted().forEach(comboBox::addItem);
+        subjectCatalog.getSubjectNames().forEach(comboBox::addItem);
+    }
+
+    private void inputChanged(Timer searchTimer) {
+        searchStartNanos = System.nanoTime();
+        searchTimer.restart();
     }
 
     private void loadMaterials(String titleFilter, String subjectFilter) {
 // ... (existing code, no changes) ...
-        tableModel.setRowCount(0); // Clear existing data
-        currentMaterials.clear(); // Clear current materials list
-        try {
-            List<Material> materials = materialDAO.getMaterials(titleFilter, subjectFilter);
-            currentMaterials.addAll(materials); // Store materials for later access
-            for (Material material : materials) {
-                tableModel.addRow(new Object[]{material.getTitle(), material.getSubjectName(), String.format("%.1f", material.getAverageRating()), material.getUploaderName()});
-            }
-        } catch (SQLException e) {
-            JOptionPane.showMessageDialog(this, "Could not load materials: " + e.getMessage(), "Database Error", JOptionPane.ERROR_MESSAGE);
+        if (tableModel.isLoading()) {
+            searchStats.recordSuperseded(); // reset() below cancels it
+        }
+        searchQuery = titleFilter;
+        if (titleFilter != null && !titleFilter.isBlank()) {
+            // Ranked by relevance and paged by (relevance, id), so every match can be scrolled to
+            tableModel.reset(cursor -> materialDAO.searchMaterialsPage(titleFilter, subjectFilter, cursor, BrowseTableModel.PAGE_SIZE));
+        } else {
+            // Only the first page is fetched now; the model fetches more as the user scrolls
+            tableModel.reset(cursor -> materialDAO.getMaterialsPage(null, subjectFilter, cursor, BrowseTableModel.PAGE_SIZE));
         }
     }
     
     private void openMaterial(Material material) {
 // ... (existing code, no changes) ...
-        try {
-            if (Desktop.isDesktopSupported() && material.getFilePath() != null) {
-                 Desktop.getDesktop().browse(new java.net.URI(material.getFilePath()));
-            } else {
-                 JOptionPane.showMessageDialog(this, "Cannot open link on this platform.", "Error", JOptionPane.ERROR_MESSAGE);
-            }
-        } catch (Exception e) {
-            JOptionPane.showMessageDialog(this, "Could not open material: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+        if (!Desktop.isDesktopSupported() || material.getFilePath() == null) {
+            JOptionPane.showMessageDialog(this, "Cannot open files on this platform.", "Error", JOptionPane.ERROR_MESSAGE);
+            return;
         }
+        // Downloaded once into the local cache, then opened from disk
+        AsyncDAO.onEdt(AsyncDAO.supply(() -> MaterialFileCache.getInstance().fetch(material)), path -> {
+            try {
+                Desktop.getDesktop().open(path.toFile());
+            } catch (Exception e) {
+                JOptionPane.showMessageDialog(this, "Could not open material: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+            }
+        }, e -> JOptionPane.showMessageDialog(this, "Could not open material: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE));
     }
 
     private void handleUpload(String title, String subjectName, File file) {
-// ... (existing code, no changes) ...
-        try {
-            // 1. Upload the file to Cloudinary
-            String url = cloudinaryService.uploadFile(file, "note0/materials", null);
-            if (url == null || url.isBlank()) {
-                throw new Exception("Cloudinary did not return a URL.");
-            }
-            
-            // 2. Get the subject ID from the cached map
-            Long subjectId = subjectNameToIdMap.get(subjectName);
-            if (subjectId == null) {
-                throw new Exception("Could not find ID for subject: " + subjectName);
-            }
-            
-            // 3. Add the material metadata to the database
-            materialDAO.addMaterial(title, url, subjectId, loggedInUser.getId());
-            
-            JOptionPane.showMessageDialog(this, "Upload successful! Your material is pending approval.", "Success", JOptionPane.INFORMATION_MESSAGE);
-            
-            // Refresh the materials list in the browse tab
-            loadMaterials("", "All Subjects"); 
-
-        } catch (Exception e) {
-            e.printStackTrace();
-            JOptionPane.showMessageDialog(this, "Upload failed: " + e.getMessage(), "Upload Error", JOptionPane.ERROR_MESSAGE);
+        // Get the subject ID from the cached catalog
+        Long subjectId = subjectCatalog.getIdByName(subjectName);
+        if (subjectId == null) {
+            JOptionPane.showMessageDialog(this, "Upload failed: Could not find ID for subject: " + subjectName, "Upload Error", JOptionPane.ERROR_MESSAGE);
+            return;
         }
+
+        // The file is uploaded and its material added in the background, with retries;
+        // see the queue below the form for progress
+        mainFrame.getUploadManager().enqueue(file, title, subjectId, loggedInUser.getId());
+        JOptionPane.showMessageDialog(this, "Upload queued. Your material will be pending approval once the upload completes.", "Upload Queued", JOptionPane.INFORMATION_MESSAGE);
     }
     
     private void rateSelectedMaterial() {
-// ... (existing code, no changes) ...
         int selectedRow = materialsTable.getSelectedRow();
         if (selectedRow < 0) {
             JOptionPane.showMessageDialog(this, "Please select a material to rate.", "Info", JOptionPane.INFORMATION_MESSAGE);
             return;
         }
         
-        try {
-            Material material = currentMaterials.get(selectedRow);
-            long materialId = material.getId();
-            
-            // Get current user rating
-            int currentRating = materialDAO.getUserRating(materialId, loggedInUser.getId());
-            
+        Material material = tableModel.getMaterialAt(materialsTable.convertRowIndexToModel(selectedRow));
+        long materialId = material.getId();
+
+        // Get current user rating
+        AsyncDAO.onEdt(AsyncDAO.supply(() -> materialDAO.getUserRating(materialId, loggedInUser.getId())), currentRating -> {
             // Show rating dialog
             String[] options = {"1 Star", "2 Stars", "3 Stars", "4 Stars", "5 Stars"};
             String message = "Rate: " + material.getTitle() + 
@@ -309,16 +364,17 @@ public class DashboardPanel extends JPanel {
             
             if (choice >= 0) {
                 int rating = choice + 1;
-                materialDAO.addOrUpdateRating(materialId, loggedInUser.getId(), rating);
-                JOptionPane.showMessageDialog(this, "Rating saved successfully!", "Success", JOptionPane.INFORMATION_MESSAGE);
-                
-                // Refresh the materials list to show updated rating
-                loadMaterials("", "All Subjects");
+                AsyncDAO.onEdt(AsyncDAO.supply(() -> materialDAO.addOrUpdateRating(materialId, loggedInUser.getId(), rating)), newAverage -> {
+                    // Updates the row in place, keeping the user's search and scroll position
+                    MaterialEvents.fireRatingChanged(material, newAverage);
+                    JOptionPane.showMessageDialog(this, "Rating saved successfully!", "Success", JOptionPane.INFORMATION_MESSAGE);
+                }, this::showRatingError);
             }
-            
-        } catch (SQLException e) {
-            JOptionPane.showMessageDialog(this, "Error rating material: " + e.getMessage(), "Database Error", JOptionPane.ERROR_MESSAGE);
-        }
+        }, this::showRatingError);
+    }
+
+    private void showRatingError(Throwable e) {
+        JOptionPane.showMessageDialog(this, "Error rating material: " + e.getMessage(), "Database Error", JOptionPane.ERROR_MESSAGE);
     }
     
     private void viewSelectedMaterial() {
@@ -329,24 +385,20 @@ public class DashboardPanel extends JPanel {
             return;
         }
         
-        Material material = currentMaterials.get(selectedRow);
+        Material material = tableModel.getMaterialAt(materialsTable.convertRowIndexToModel(selectedRow));
         openMaterial(material);
     }
     
-    private JPanel createMyUploadsPanel() {
+    private JPanel createMyUploadsPanel(List<Material> preloaded) {
         JPanel panel = new JPanel(new BorderLayout(10, 10));
         panel.setBackground(UITheme.APP_BACKGROUND);
         panel.setBorder(UITheme.APP_PADDING);
         
         // My uploads table
-        String[] columnNames = {"Title", "Subject", "Rating", "Status"};
-        DefaultTableModel myUploadsModel = new DefaultTableModel(columnNames, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
-            }
-        };
+        MaterialTableModel myUploadsModel = new MaterialTableModel(MaterialTableModel.Column.TITLE,
+                MaterialTableModel.Column.SUBJECT, MaterialTableModel.Column.RATING, MaterialTableModel.Column.STATUS);
         JTable myUploadsTable = new JTable(myUploadsModel);
+        MaterialTableModel.install(myUploadsTable);
         myUploadsTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
         
         // Action buttons for my uploads
@@ -367,56 +419,43 @@ public class DashboardPanel extends JPanel {
         panel.add(myUploadsActionPanel, BorderLayout.SOUTH);
         
         // Load initial data
-        loadMyUploads(myUploadsModel);
+        if (preloaded != null) {
+            myUploadsModel.setMaterials(preloaded);
+        } else {
+            loadMyUploads(myUploadsModel);
+        }
         
         return panel;
     }
     
-    private void loadMyUploads(DefaultTableModel model) {
-// ... (existing code, no changes) ...
-        model.setRowCount(0);
-        try {
-            List<Material> myMaterials = materialDAO.getMaterialsByUser(loggedInUser.getId());
-            for (Material material : myMaterials) {
-                model.addRow(new Object[]{
-                    material.getTitle(), 
-                    material.getSubjectName(), 
-                    String.format("%.1f", material.getAverageRating()),
-                    material.getApprovalStatus()
-                });
-            }
-        } catch (SQLException e) {
-            JOptionPane.showMessageDialog(this, "Could not load your uploads: " + e.getMessage(), "Database Error", JOptionPane.ERROR_MESSAGE);
-        }
+    private void loadMyUploads(MaterialTableModel model) {
+        AsyncDAO.onEdt(AsyncDAO.supply(() -> materialDAO.getMaterialsByUser(loggedInUser.getId())), model::setMaterials,
+                e -> JOptionPane.showMessageDialog(this, "Could not load your uploads: " + e.getMessage(), "Database Error", JOptionPane.ERROR_MESSAGE));
     }
     
-    private void deleteMyUpload(JTable table, DefaultTableModel model) {
-// ... (existing code, no changes) ...
+    private void deleteMyUpload(JTable table, MaterialTableModel model) {
         int selectedRow = table.getSelectedRow();
         if (selectedRow < 0) {
             JOptionPane.showMessageDialog(this, "Please select an upload to delete.", "Info", JOptionPane.INFORMATION_MESSAGE);
             return;
         }
         
-        try {
-            List<Material> myMaterials = materialDAO.getMaterialsByUser(loggedInUser.getId());
-            if (selectedRow < myMaterials.size()) {
-                Material material = myMaterials.get(selectedRow);
-                
-                int confirm = JOptionPane.showConfirmDialog(this, 
-                    "Are you sure you want to delete '" + material.getTitle() + "'?\n\n" +
-                    "This will remove the material from the database.\n" +
-                    "The uploaded file will remain in Cloudinary storage.", 
-                    "Confirm Deletion", JOptionPane.YES_NO_OPTION);
-                
-                if (confirm == JOptionPane.YES_OPTION) {
-                    materialDAO.deleteMaterial(material.getId());
-                    JOptionPane.showMessageDialog(this, "Upload deleted successfully!", "Success", JOptionPane.INFORMATION_MESSAGE);
-                    loadMyUploads(model); // Refresh the list
-                }
-            }
-        } catch (SQLException e) {
-            JOptionPane.showMessageDialog(this, "Error deleting upload: " + e.getMessage(), "Database Error", JOptionPane.ERROR_MESSAGE);
+        Material material = model.getMaterialAt(table.convertRowIndexToModel(selectedRow));
+        int confirm = JOptionPane.showConfirmDialog(this, 
+            "Are you sure you want to delete '" + material.getTitle() + "'?\n\n" +
+            "This will remove the material from the database.\n" +
+            "The uploaded file will remain in storage.", 
+            "Confirm Deletion", JOptionPane.YES_NO_OPTION);
+        
+        if (confirm == JOptionPane.YES_OPTION) {
+            AsyncDAO.onEdt(AsyncDAO.run(() -> materialDAO.deleteMaterial(material.getId())), done -> {
+                model.removeMaterials(List.of(material.getId()));
+                JOptionPane.showMessageDialog(this, "Upload deleted successfully!", "Success", JOptionPane.INFORMATION_MESSAGE);
+            }, this::showDeleteError);
         }
     }
+
+    private void showDeleteError(Throwable e) {
+        JOptionPane.showMessageDialog(this, "Error deleting upload: " + e.getMessage(), "Database Error", JOptionPane.ERROR_MESSAGE);
+    }
 }
@@ -1,18 +1,308 @@
 package com.note0.simple;
 
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+/**
+ * Hands out JDBC connections from a small, bounded pool.
+ * Opening a connection to Aiven means a full TLS handshake, so physical connections
+ * are kept open and reused. Callers keep using try-with-resources: closing the
+ * returned connection gives it back to the pool instead of closing the socket.
+ *
+ * Pool limits can be tuned with system properties, e.g. -Dnote0.db.pool.maxSize=12.
+ */
 public class DatabaseManager {
 
     // --- IMPORTANT: REPLACE THESE WITH YOUR AIVEN CREDENTIALS ---
-    private static final String DB_URL = "jdbc:postgresql://pg-1f5358eb-note0.k.aivencloud.com:17737/defaultdb?sslmode=require";
-    private static final String USER = "avnadmin";
-    private static final String PASSWORD = "AVNS_zjes6XbHRJo9YtEPMuI";
+    // (or override them with -Dnote0.db.url, -Dnote0.db.user and -Dnote0.db.password)
+    private static final String DB_URL = System.getProperty("note0.db.url", "jdbc:postgresql://pg-1f5358eb-note0.k.aivencloud.com:17737/defaultdb?sslmode=require");
+    private static final String USER = System.getProperty("note0.db.user", "avnadmin");
+    private static final String PASSWORD = System.getProperty("note0.db.password", "AVNS_zjes6XbHRJo9YtEPMuI");
     // -----------------------------------------------------------
 
+    // --- Pool configuration ---
+    private static final int MAX_POOL_SIZE = Integer.getInteger("note0.db.pool.maxSize", 8);
+    private static final int MIN_IDLE = Math.min(Integer.getInteger("note0.db.pool.minIdle", 2), MAX_POOL_SIZE);
+    private static final long BORROW_TIMEOUT_MS = Long.getLong("note0.db.pool.borrowTimeoutMs", 15_000);
+    private static final long IDLE_TIMEOUT_MS = Long.getLong("note0.db.pool.idleTimeoutMs", 300_000);
+    private static final long VALIDATE_AFTER_IDLE_MS = Long.getLong("note0.db.pool.validateAfterIdleMs", 5_000);
+    private static final int VALIDATION_TIMEOUT_SECONDS = Integer.getInteger("note0.db.pool.validationTimeoutSeconds", 3);
+    private static final long EVICTION_INTERVAL_MS = Long.getLong("note0.db.pool.evictionIntervalMs", 30_000);
+
+    // Idle connections, most recently returned first, so hot connections stay hot.
+    private static final LinkedBlockingDeque<PooledConnection> idleConnections = new LinkedBlockingDeque<>();
+    // One permit per connection that may be borrowed at the same time.
+    private static final Semaphore permits = new Semaphore(MAX_POOL_SIZE, true);
+
+    private static final ScheduledExecutorService evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "note0-db-pool-evictor");
+        t.setDaemon(true);
+        return t;
+    });
+
+    static {
+        evictor.scheduleWithFixedDelay(DatabaseManager::evictIdleConnections,
+                EVICTION_INTERVAL_MS, EVICTION_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrows a connection from the pool, opening a new one only if no idle connection is available.
+     * The connection must be closed by the caller to return it to the pool.
+     * While the startup migration is still running, waits for it first (see DatabaseMigration.awaitStartup).
+     * @return A pooled connection.
+     * @throws SQLException if no connection could be obtained within the borrow timeout.
+     */
     public static Connection getConnection() throws SQLException {
+        DatabaseMigration.awaitStartup();
+        try {
+            if (!permits.tryAcquire(BORROW_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                throw new SQLException("Timed out after " + BORROW_TIMEOUT_MS + " ms waiting for a database connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+
+        try {
+            PooledConnection pooled;
+            while ((pooled = idleConnections.pollFirst()) != null) {
+                if (isUsable(pooled)) {
+                    return pooled.lend();
+                }
+                closeQuietly(pooled.physical);
+            }
+            return new PooledConnection(openPhysicalConnection()).lend();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens the minimum number of idle connections ahead of time so that the first
+     * queries after startup do not pay for the TLS handshake.
+     * Safe to call from a background thread; failures are only logged.
+     */
+    public static void warmUp() {
+        long start = System.nanoTime();
+        int opened = 0;
+        // Each connection is opened under a permit, like a borrowed one, so borrowed plus idle
+        // connections never exceed the pool size. Warm-up stops rather than wait for a permit.
+        while (idleConnections.size() < MIN_IDLE && permits.tryAcquire()) {
+            try {
+                if (idleConnections.size() >= MIN_IDLE) {
+                    break;
+                }
+                idleConnections.offerFirst(new PooledConnection(openPhysicalConnection()));
+                opened++;
+            } catch (SQLException e) {
+                System.err.println("DatabaseManager: Warm-up failed: " + e.getMessage());
+                break;
+            } finally {
+                permits.release();
+            }
+        }
+        System.out.println("DatabaseManager: Warmed up " + opened + " connection(s) in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+    /**
+     * Closes every idle connection. Borrowed connections are closed when they are returned.
+     */
+    public static void shutdown() {
+        evictor.shutdownNow();
+        PooledConnection pooled;
+        while ((pooled = idleConnections.pollFirst()) != null) {
+            closeQuietly(pooled.physical);
+        }
+    }
+
+    static Connection openPhysicalConnection() throws SQLException {
         return DriverManager.getConnection(DB_URL, USER, PASSWORD);
     }
-}
\ No newline at end of file
+
+    private static boolean isUsable(PooledConnection pooled) {
+        try {
+            if (pooled.physical.isClosed()) {
+                return false;
+            }
+            // Skip the validation round trip for connections that were just returned.
+            if (System.currentTimeMillis() - pooled.lastReturnedAt < VALIDATE_AFTER_IDLE_MS) {
+                return true;
+            }
+            return pooled.physical.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private static void evictIdleConnections() {
+        long now = System.currentTimeMillis();
+        List<PooledConnection> expired = new ArrayList<>();
+        // Oldest connections sit at the tail of the deque.
+        Iterator<PooledConnection> it = idleConnections.descendingIterator();
+        while (it.hasNext() && idleConnections.size() - expired.size() > MIN_IDLE) {
+            PooledConnection pooled = it.next();
+            if (now - pooled.lastReturnedAt > IDLE_TIMEOUT_MS) {
+                expired.add(pooled);
+            }
+        }
+        for (PooledConnection pooled : expired) {
+            if (idleConnections.remove(pooled)) {
+                closeQuietly(pooled.physical);
+            }
+        }
+    }
+
+    private static void release(PooledConnection pooled) {
+        try {
+            if (pooled.physical.isClosed()) {
+                return;
+            }
+            if (!pooled.physical.getAutoCommit()) {
+                pooled.physical.rollback();
+                pooled.physical.setAutoCommit(true);
+            }
+            // Only reset what the borrower changed; reading the isolation level costs a round trip
+            if (pooled.readOnlyChanged) {
+                pooled.physical.setReadOnly(pooled.originalReadOnly);
+                pooled.readOnlyChanged = false;
+            }
+            if (pooled.isolationChanged) {
+                pooled.physical.setTransactionIsolation(pooled.originalIsolation);
+                pooled.isolationChanged = false;
+            }
+            pooled.physical.clearWarnings();
+            pooled.lastReturnedAt = System.currentTimeMillis();
+            idleConnections.offerFirst(pooled);
+        } catch (SQLException e) {
+            // The connection is in an unknown state, so drop it rather than reuse it.
+            closeQuietly(pooled.physical);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private static void closeQuietly(Connection conn) {
+        try {
+            conn.close();
+        } catch (SQLException ignored) {
+            // Nothing useful to do with a failing close.
+        }
+    }
+
+    /**
+     * A physical connection owned by the pool.
+     */
+    private static class PooledConnection {
+        final Connection physical;
+        volatile long lastReturnedAt = System.currentTimeMillis();
+        // Recorded by the lease before the borrower first changes them, restored by release
+        volatile boolean readOnlyChanged;
+        volatile boolean originalReadOnly;
+        volatile boolean isolationChanged;
+        volatile int originalIsolation;
+
+        PooledConnection(Connection physical) {
+            this.physical = physical;
+        }
+
+        Connection lend() {
+            return (Connection) Proxy.newProxyInstance(
+                    DatabaseManager.class.getClassLoader(),
+                    new Class<?>[]{Connection.class},
+                    new LeaseHandler(this));
+        }
+    }
+
+    /**
+     * Forwards calls to the physical connection until the lease is closed,
+     * then returns the connection to the pool. Statements are wrapped so that
+     * their getConnection returns the lease rather than the physical connection.
+     */
+    private static class LeaseHandler implements InvocationHandler {
+        private final PooledConnection pooled;
+        // Not synchronized on purpose: holding a monitor during a query would pin virtual threads
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        LeaseHandler(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (closed.compareAndSet(false, true)) {
+                        release(pooled);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed.get() || pooled.physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled" + pooled.physical;
+                default:
+                    if (closed.get()) {
+                        throw new SQLException("Connection has already been returned to the pool");
+                    }
+                    if (method.getName().equals("setReadOnly") && !pooled.readOnlyChanged) {
+                        pooled.originalReadOnly = pooled.physical.isReadOnly();
+                        pooled.readOnlyChanged = true;
+                    } else if (method.getName().equals("setTransactionIsolation") && !pooled.isolationChanged) {
+                        pooled.originalIsolation = pooled.physical.getTransactionIsolation();
+                        pooled.isolationChanged = true;
+                    }
+                    Object result = forward(pooled.physical, method, args);
+                    if (result instanceof Statement) {
+                        return wrapStatement((Statement) result, method.getReturnType(), (Connection) proxy);
+                    }
+                    return result;
+            }
+        }
+    }
+
+    /**
+     * @param type Statement, PreparedStatement or CallableStatement, as declared by the method that created it
+     */
+    private static Object wrapStatement(Statement statement, Class<?> type, Connection lease) {
+        return Proxy.newProxyInstance(DatabaseManager.class.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getConnection":
+                    return lease;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    return forward(statement, method, args);
+            }
+        });
+    }
+
+    private static Object forward(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
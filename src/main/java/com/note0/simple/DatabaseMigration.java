@@ -0,0 +1,265 @@
+package com.note0.simple;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Brings the database schema up to date.
+ *
+ * Migrations are numbered and applied in order, each in its own transaction, and every
+ * applied version is recorded in the schema_version table. At startup a single query
+ * compares the recorded version with {@link #LATEST_VERSION}, so an up-to-date database
+ * costs one round trip. SQL migrations live in src/main/resources/db/migration.
+ *
+ * Can also be run on its own: mvn exec:java@migrate-database
+ */
+public class DatabaseMigration {
+
+    // Serializes clients that try to migrate the same database at the same time
+    private static final long MIGRATION_LOCK_KEY = 0x6e6f746530L; // "note0"
+
+    private static final boolean MIGRATE_ON_STARTUP =
+            Boolean.parseBoolean(System.getProperty("note0.db.migrateOnStartup", "true"));
+    private static final long STARTUP_WAIT_MS = Long.getLong("note0.db.migrationWaitMs", 60_000);
+
+    // Completed when migrateOnStartup has finished, successfully or not
+    private static final CompletableFuture<Void> startup = new CompletableFuture<>();
+    private static volatile boolean startupScheduled;
+    // True on the thread running the startup migration, which must not wait for itself
+    private static final ThreadLocal<Boolean> migrating = ThreadLocal.withInitial(() -> false);
+
+    /**
+     * One step of the schema history.
+     */
+    @FunctionalInterface
+    interface Step {
+        void apply(Connection conn) throws SQLException;
+    }
+
+    private static class Migration {
+        final int version;
+        final String description;
+        final Step step;
+
+        Migration(int version, String description, Step step) {
+            this.version = version;
+            this.description = description;
+            this.step = step;
+        }
+    }
+
+    private static final List<Migration> MIGRATIONS = Collections.unmodifiableList(createMigrations());
+
+    public static final int LATEST_VERSION = MIGRATIONS.get(MIGRATIONS.size() - 1).version;
+
+    private static List<Migration> createMigrations() {
+        List<Migration> migrations = new ArrayList<>();
+        migrations.add(sql(1, "approval_status"));
+        migrations.add(sql(2, "rating_totals"));
+        migrations.add(sql(3, "title_search"));
+        migrations.add(sql(4, "change_notifications"));
+        migrations.add(new Migration(5, "admin_user", conn -> new UserDAO().createAdminUser(conn)));
+        migrations.add(sql(6, "top_rated_index"));
+        migrations.add(sql(7, "material_updated_at"));
+        migrations.add(sql(8, "content_hash"));
+        return migrations;
+    }
+
+    private static Migration sql(int version, String description) {
+        String resource = "/db/migration/V" + version + "__" + description + ".sql";
+        return new Migration(version, description, conn -> {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute(readResource(resource));
+            }
+        });
+    }
+
+    public static void main(String[] args) {
+        try {
+            int version = migrate();
+            System.out.println("Database schema is at version " + version);
+        } catch (SQLException e) {
+            System.err.println("Database migration failed: " + e.getMessage());
+            System.exit(1);
+        } finally {
+            DatabaseManager.shutdown();
+        }
+    }
+
+    /**
+     * Announces that migrateOnStartup is about to run on another thread. From then on every
+     * database access (through DatabaseManager.getConnection) waits until it has finished, so
+     * no query runs against, and no SchemaCapabilities are detected from, the old schema.
+     * Call before anything can query, e.g. before the login screen is shown.
+     */
+    public static void scheduleStartup() {
+        startupScheduled = true;
+    }
+
+    /**
+     * Blocks until the startup migration announced with scheduleStartup has finished, for at most
+     * -Dnote0.db.migrationWaitMs (default 60 s). Returns immediately if none was announced,
+     * if it is done, or on the migrating thread itself.
+     */
+    static void awaitStartup() {
+        if (!startupScheduled || startup.isDone() || migrating.get()) {
+            return;
+        }
+        try {
+            startup.get(STARTUP_WAIT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (TimeoutException e) {
+            System.err.println("DatabaseMigration: Still migrating after " + STARTUP_WAIT_MS + " ms, continuing without waiting");
+        } catch (ExecutionException e) {
+            // Never completed exceptionally; migrateOnStartup logs its own errors
+        }
+    }
+
+    /**
+     * Applies pending migrations unless disabled with -Dnote0.db.migrateOnStartup=false.
+     * Errors are logged rather than thrown; the DAOs cope with an older schema.
+     * Completes the wait started by scheduleStartup.
+     */
+    public static void migrateOnStartup() {
+        migrating.set(true);
+        try {
+            if (MIGRATE_ON_STARTUP) {
+                migrate();
+            } else {
+                int version = getCurrentVersion();
+                if (version < LATEST_VERSION) {
+                    System.err.println("Database schema is at version " + version + " of " + LATEST_VERSION
+                            + "; run mvn exec:java@migrate-database to update it.");
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Database migration failed: " + e.getMessage());
+        } finally {
+            migrating.remove();
+            startup.complete(null);
+        }
+    }
+
+    /**
+     * Applies every migration newer than the recorded schema version.
+     * @return The schema version after migrating
+     * @throws SQLException if a migration fails; earlier migrations stay applied
+     */
+    public static int migrate() throws SQLException {
+        int current = getCurrentVersion();
+        if (current >= LATEST_VERSION) {
+            return current; // The common case: one query and done
+        }
+
+        try (Connection conn = DatabaseManager.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                inTransaction(conn, () -> {
+                    try (Statement stmt = conn.createStatement()) {
+                        stmt.execute("CREATE TABLE IF NOT EXISTS schema_version (" +
+                                "version INTEGER PRIMARY KEY, " +
+                                "description TEXT NOT NULL, " +
+                                "installed_on TIMESTAMPTZ NOT NULL DEFAULT now())");
+                    }
+                });
+
+                for (Migration migration : MIGRATIONS) {
+                    if (migration.version <= current) {
+                        continue;
+                    }
+                    inTransaction(conn, () -> {
+                        // Another client may have applied it while we waited for the lock
+                        if (isApplied(conn, migration.version)) {
+                            return;
+                        }
+                        long start = System.nanoTime();
+                        migration.step.apply(conn);
+                        try (PreparedStatement pstmt = conn.prepareStatement(
+                                "INSERT INTO schema_version (version, description) VALUES (?, ?)")) {
+                            pstmt.setInt(1, migration.version);
+                            pstmt.setString(2, migration.description);
+                            pstmt.executeUpdate();
+                        }
+                        System.out.println("DatabaseMigration: Applied V" + migration.version + " " + migration.description
+                                + " in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+                    });
+                    current = migration.version;
+                }
+            } finally {
+                conn.setAutoCommit(true);
+                // Columns may have been added; detect them again on next use
+                SchemaCapabilities.reset();
+            }
+        }
+        return current;
+    }
+
+    /**
+     * @return The highest applied migration, or 0 for a database that was never migrated.
+     */
+    public static int getCurrentVersion() throws SQLException {
+        try (Connection conn = DatabaseManager.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(version), 0) FROM schema_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        } catch (SQLException e) {
+            if ("42P01".equals(e.getSQLState())) {
+                return 0; // undefined_table: this database was never migrated
+            }
+            throw e;
+        }
+    }
+
+    private static void inTransaction(Connection conn, Body body) throws SQLException {
+        try {
+            try (PreparedStatement lock = conn.prepareStatement("SELECT pg_advisory_xact_lock(?)")) {
+                lock.setLong(1, MIGRATION_LOCK_KEY);
+                lock.execute();
+            }
+            body.run();
+            conn.commit();
+        } catch (SQLException | RuntimeException e) {
+            conn.rollback();
+            throw e;
+        }
+    }
+
+    @FunctionalInterface
+    private interface Body {
+        void run() throws SQLException;
+    }
+
+    private static boolean isApplied(Connection conn, int version) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT 1 FROM schema_version WHERE version = ?")) {
+            pstmt.setInt(1, version);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    private static String readResource(String resource) throws SQLException {
+        try (InputStream in = DatabaseMigration.class.getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new SQLException("Migration script not found: " + resource);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new SQLException("Could not read migration script " + resource, e);
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.note0.simple;
+
+import javax.swing.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * List model for a feed that loads materials one page at a time as the user scrolls.
+ * Works like BrowseTableModel, but for the card lists on the Home tab.
+ * Rating changes announced through MaterialEvents are applied to the loaded cards in place.
+ */
+public class FeedListModel extends AbstractListModel<Material> implements MaterialEvents.RatingListener {
+
+    /** The order of MaterialDAO.getTopRatedMaterialsPage: best average first, then newest. */
+    public static final Comparator<Material> TOP_RATED_ORDER =
+            Comparator.comparingDouble(Material::getAverageRating).reversed()
+                    .thenComparing(Comparator.comparingLong(Material::getId).reversed());
+
+    public static final int PAGE_SIZE = Integer.getInteger("note0.feed.pageSize", 20);
+    // Start fetching the next page when the user is this many cards away from the end
+    private static final int PREFETCH_ITEMS = Integer.getInteger("note0.feed.prefetchItems", 5);
+
+    private final List<Material> materials = new ArrayList<>();
+    private final BrowseTableModel.PageLoader loader;
+    private final Comparator<Material> ratingOrder;
+    private String nextCursor;
+    private boolean hasMore = true;
+    private boolean loading;
+    private boolean failed;
+    private Consumer<Throwable> errorHandler = Throwable::printStackTrace;
+    private CompletableFuture<MaterialPage> pendingPage;
+
+    /**
+     * @param loader The source of pages, e.g. MaterialDAO.getRecentMaterialsPage
+     * @param firstPage An already fetched first page, or null to load it
+     */
+    public FeedListModel(BrowseTableModel.PageLoader loader, MaterialPage firstPage) {
+        this(loader, firstPage, null);
+    }
+
+    /**
+     * @param ratingOrder The feed's order if it depends on ratings (e.g. TOP_RATED_ORDER), so that a
+     *                    rated card can be moved to its new place; null if ratings do not affect the order
+     */
+    public FeedListModel(BrowseTableModel.PageLoader loader, MaterialPage firstPage, Comparator<Material> ratingOrder) {
+        this.loader = loader;
+        this.ratingOrder = ratingOrder;
+        MaterialEvents.addRatingListener(this);
+        if (firstPage != null) {
+            appendPage(firstPage);
+        } else {
+            loadNextPage();
+        }
+    }
+
+    @Override
+    public int getSize() {
+        return materials.size();
+    }
+
+    @Override
+    public Material getElementAt(int index) {
+        return materials.get(index);
+    }
+
+    public void setErrorHandler(Consumer<Throwable> errorHandler) {
+        this.errorHandler = errorHandler;
+    }
+
+    /**
+     * @return true while the first page is still loading.
+     */
+    public boolean isLoadingFirstPage() {
+        return loading && materials.isEmpty();
+    }
+
+    /**
+     * @return true if loading a page failed; no further pages are loaded then.
+     */
+    public boolean hasFailed() {
+        return failed;
+    }
+
+    /**
+     * Updates the rated material's card, and in a rating-ordered feed moves it to its new place.
+     * A card that moves past the loaded cards is dropped, since the next page will bring it back,
+     * and a material that was not loaded is added if it now ranks among the loaded cards.
+     */
+    @Override
+    public void ratingChanged(Material material, double averageRating) {
+        int index = indexOf(material.getId());
+        Material card = material;
+        if (index >= 0) {
+            card = materials.get(index);
+            card.setAverageRating(averageRating);
+            if (ratingOrder == null) {
+                fireContentsChanged(this, index, index);
+                return;
+            }
+            materials.remove(index);
+            fireIntervalRemoved(this, index, index);
+        } else if (ratingOrder == null) {
+            return;
+        }
+
+        int position = Collections.binarySearch(materials, card, ratingOrder);
+        position = position < 0 ? -position - 1 : position;
+        if (position < materials.size() || !hasMore) {
+            materials.add(position, card);
+            fireIntervalAdded(this, position, position);
+        }
+    }
+
+    private int indexOf(long materialId) {
+        for (int i = 0; i < materials.size(); i++) {
+            if (materials.get(i).getId() == materialId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Loads the next page if the last visible card is close enough to the end of the loaded cards.
+     */
+    public void loadMoreIfNeeded(int lastVisibleIndex) {
+        if (lastVisibleIndex >= materials.size() - PREFETCH_ITEMS) {
+            loadNextPage();
+        }
+    }
+
+    /**
+     * Connects the model to the list's scroll pane so that scrolling near the end fetches more cards.
+     */
+    public void installOn(JList<Material> list, JScrollPane scrollPane) {
+        Runnable check = () -> {
+            // A hidden list has no visible cards, so it must not pull in pages on its own
+            if (list.isShowing()) {
+                int last = list.getLastVisibleIndex();
+                loadMoreIfNeeded(last < 0 ? materials.size() - 1 : last);
+            }
+        };
+        scrollPane.getVerticalScrollBar().addAdjustmentListener(e -> check.run());
+        // If a page does not fill the viewport there is nothing to scroll, so check again after each load
+        addListDataListener(new javax.swing.event.ListDataListener() {
+            @Override
+            public void intervalAdded(javax.swing.event.ListDataEvent e) {
+                SwingUtilities.invokeLater(check);
+            }
+
+            @Override
+            public void intervalRemoved(javax.swing.event.ListDataEvent e) {
+            }
+
+            @Override
+            public void contentsChanged(javax.swing.event.ListDataEvent e) {
+            }
+        });
+        list.addHierarchyListener(e -> {
+            if ((e.getChangeFlags() & java.awt.event.HierarchyEvent.SHOWING_CHANGED) != 0) {
+                SwingUtilities.invokeLater(check);
+            }
+        });
+    }
+
+    /**
+     * Stops a page load that is still running, e.g. when the feed is rebuilt.
+     */
+    public void dispose() {
+        if (pendingPage != null) {
+            pendingPage.cancel(true);
+            pendingPage = null;
+        }
+        hasMore = false;
+    }
+
+    private void loadNextPage() {
+        if (loading || !hasMore) {
+            return;
+        }
+        loading = true;
+        final String cursor = nextCursor;
+
+        pendingPage = AsyncDAO.supply(() -> loader.loadPage(cursor));
+        AsyncDAO.onEdt(pendingPage, page -> {
+            loading = false;
+            pendingPage = null;
+            appendPage(page);
+        }, error -> {
+            loading = false;
+            pendingPage = null;
+            hasMore = false;
+            failed = true;
+            errorHandler.accept(error);
+            fireContentsChanged(this, 0, Math.max(0, materials.size() - 1));
+        });
+    }
+
+    private void appendPage(MaterialPage page) {
+        nextCursor = page.getNextCursor();
+        hasMore = page.hasMore();
+        if (!page.getMaterials().isEmpty()) {
+            int first = materials.size();
+            materials.addAll(page.getMaterials());
+            fireIntervalAdded(this, first, materials.size() - 1);
+        } else {
+            // Let listeners know the (empty) result arrived
+            fireContentsChanged(this, 0, Math.max(0, materials.size() - 1));
+        }
+    }
+}
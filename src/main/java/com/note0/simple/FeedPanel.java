@@ -4,8 +4,10 @@ import javax.swing.*;
 import javax.swing.border.TitledBorder;
 import java.awt.*;
 import java.awt.event.ActionEvent;
-import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.function.Supplier;
 
 public class FeedPanel extends JPanel {
 
@@ -13,18 +15,26 @@ public class FeedPanel extends JPanel {
     private final User loggedInUser;
     private final MaterialDAO materialDAO;
     private final SubjectDAO subjectDAO;
-    private final CloudinaryService cloudinaryService;
+    private final StorageService storageService;
 
     // We make the JTabbedPane a field so we can refresh it
-    private JTabbedPane tabbedPane;
+    private LazyTabbedPane tabbedPane;
+    private final List<FeedListModel> feedModels = new ArrayList<>();
 
-    public FeedPanel(MainFrame mainFrame, User user, MaterialDAO materialDAO, SubjectDAO subjectDAO, CloudinaryService cloudinaryService) {
+    public FeedPanel(MainFrame mainFrame, User user, MaterialDAO materialDAO, SubjectDAO subjectDAO, StorageService storageService) {
+        this(mainFrame, user, materialDAO, subjectDAO, storageService, null);
+    }
+
+    /**
+     * @param preloaded Feed contents fetched by MainAppLoader, or null to load them here
+     */
+    public FeedPanel(MainFrame mainFrame, User user, MaterialDAO materialDAO, SubjectDAO subjectDAO, StorageService storageService, MainAppData preloaded) {
         this.mainFrame = mainFrame;
         this.loggedInUser = user;
         this.materialDAO = materialDAO;
         // Keep these in case you need them later
         this.subjectDAO = subjectDAO;
-        this.cloudinaryService = cloudinaryService;
+        this.storageService = storageService;
 
 
         setLayout(new BorderLayout(10, 10)); // Add gaps
@@ -53,133 +63,167 @@ public class FeedPanel extends JPanel {
         add(navPanel, BorderLayout.NORTH);
 
         // Main Content
-        tabbedPane = new JTabbedPane(); // Initialize the class field
+        tabbedPane = new LazyTabbedPane(); // Initialize the class field
         tabbedPane.setFont(UITheme.LABEL_FONT);
 
         // Build the feeds for the first time
-        buildFeeds();
+        buildFeeds(preloaded);
 
         add(tabbedPane, BorderLayout.CENTER);
     }
 
     /**
-     * A new method to build (or rebuild) all feed tabs.
+     * @param preloaded Feed contents to show right away, or null to fetch them
      */
-    private void buildFeeds() {
-        // Remove old content
+    private void buildFeeds(MainAppData preloaded) {
+        // Stop page loads of the feeds being replaced, then remove old content
+        feedModels.forEach(FeedListModel::dispose);
+        feedModels.clear();
         tabbedPane.removeAll();
+
+        MaterialPage recent = preloaded != null ? preloaded.getRecentPage() : null;
+        MaterialPage topRated = preloaded != null ? preloaded.getTopRatedPage() : null;
+        BrowseTableModel.PageLoader recentLoader = cursor -> materialDAO.getRecentMaterialsPage(cursor, FeedListModel.PAGE_SIZE);
+        // For Recommended and Popular, we'll just get top rated for now
+        BrowseTableModel.PageLoader topRatedLoader = cursor -> materialDAO.getTopRatedMaterialsPage(cursor, FeedListModel.PAGE_SIZE);
+
+        // Recommended and Popular show the same query, so they share one model:
+        // it is fetched once, by whichever tab is opened first
+        FeedListModel[] topRatedModel = new FeedListModel[1];
+        Supplier<FeedListModel> sharedTopRated = () -> {
+            if (topRatedModel[0] == null) {
+                topRatedModel[0] = createFeedModel(topRatedLoader, topRated, FeedListModel.TOP_RATED_ORDER);
+            }
+            return topRatedModel[0];
+        };
         
         // Add new, refreshed content
-        tabbedPane.addTab("Recent", createFeedSection("Recent Materials"));
-        tabbedPane.addTab("Recommended", createFeedSection("Recommended Materials"));
-        tabbedPane.addTab("Popular", createFeedSection("Popular Materials"));
+        tabbedPane.addTab("Recent", createFeedSection(createFeedModel(recentLoader, recent, null)));
+        addFeedTab("Recommended", sharedTopRated, topRated != null);
+        addFeedTab("Popular", sharedTopRated, topRated != null);
+        tabbedPane.prewarmConfigured();
     }
 
-    private JScrollPane createFeedSection(String title) {
-        JPanel sectionPanel = new JPanel();
-        sectionPanel.setLayout(new BoxLayout(sectionPanel, BoxLayout.Y_AXIS));
-        sectionPanel.setBackground(UITheme.APP_BACKGROUND); // Match background
-        
-        List<Material> materials;
-        try {
-            if (title.equals("Recent Materials")) {
-                materials = materialDAO.getRecentMaterials(10);
-            } else { // For Recommended and Popular, we'll just get top rated for now
-                materials = materialDAO.getTopRatedMaterials(10);
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-            sectionPanel.add(new JLabel("Error loading materials."));
-            return new JScrollPane(sectionPanel);
-        }
+    private FeedListModel createFeedModel(BrowseTableModel.PageLoader loader, MaterialPage firstPage, Comparator<Material> ratingOrder) {
+        FeedListModel model = new FeedListModel(loader, firstPage, ratingOrder);
+        feedModels.add(model);
+        return model;
+    }
 
-        if (materials.isEmpty()) {
-            sectionPanel.add(new JLabel("No materials to display."));
+    /**
+     * Adds a feed tab, deferring its query until the tab is opened unless its first page is already known.
+     */
+    private void addFeedTab(String tabTitle, Supplier<FeedListModel> model, boolean loaded) {
+        if (loaded) {
+            tabbedPane.addTab(tabTitle, createFeedSection(model.get()));
         } else {
-            for (Material material : materials) {
-                sectionPanel.add(createSimpleMaterialPanel(material));
-                sectionPanel.add(Box.createRigidArea(new Dimension(0, 15))); // More spacer
-            }
+            tabbedPane.addLazyTab(tabTitle, () -> createFeedSection(model.get()));
         }
-        
-        JScrollPane scrollPane = new JScrollPane(sectionPanel);
-        scrollPane.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
-        scrollPane.setBackground(UITheme.APP_BACKGROUND);
-        return scrollPane;
     }
 
-    private JPanel createSimpleMaterialPanel(Material material) {
-        JPanel panel = new JPanel(new BorderLayout(10, 10));
-        panel.setBackground(UITheme.CARD_BACKGROUND);
-        panel.setBorder(UITheme.createShadowBorder()); // Apply shadow border to each card
+    /**
+     * Creates a scrolling feed of material cards.
+     * Cards are painted by a single shared renderer, and further pages are fetched
+     * as the user scrolls, so the feed can grow to thousands of materials.
+     */
+    private JComponent createFeedSection(FeedListModel model) {
+        JPanel sectionPanel = new JPanel(new BorderLayout());
+        sectionPanel.setBackground(UITheme.APP_BACKGROUND); // Match background
 
-        JPanel infoPanel = new JPanel();
-        infoPanel.setBackground(UITheme.CARD_BACKGROUND);
-        infoPanel.setLayout(new BoxLayout(infoPanel, BoxLayout.Y_AXIS));
-        
-        JLabel titleLabel = new JLabel(material.getTitle());
-        titleLabel.setFont(UITheme.LABEL_FONT);
-        infoPanel.add(titleLabel);
-        
-        infoPanel.add(new JLabel("Subject: " + material.getSubjectName())); 
-        infoPanel.add(new JLabel("Rating: " + String.format("%.1f", material.getAverageRating())));
-
-        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
-        buttonPanel.setBackground(UITheme.CARD_BACKGROUND);
-        JButton viewButton = new JButton("View");
-        UITheme.stylePrimaryButton(viewButton);
-        JButton rateButton = new JButton("Rate");
-        UITheme.styleSecondaryButton(rateButton);
-        
-        viewButton.addActionListener(e -> handleMaterialClick(material));
-        rateButton.addActionListener(e -> rateMaterial(material));
+        JLabel statusLabel = new JLabel();
+        statusLabel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        sectionPanel.add(statusLabel, BorderLayout.NORTH);
+
+        JList<Material> list = new JList<>(model);
+        MaterialCardRenderer renderer = new MaterialCardRenderer();
+        list.setCellRenderer(renderer);
+        list.setFixedCellHeight(MaterialCardRenderer.getCellHeight()); // No per-card measuring
+        list.setBackground(UITheme.APP_BACKGROUND);
+        list.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+
+        list.addMouseListener(new java.awt.event.MouseAdapter() {
+            @Override
+            public void mouseClicked(java.awt.event.MouseEvent evt) {
+                int index = list.locationToIndex(evt.getPoint());
+                if (index < 0 || !list.getCellBounds(index, index).contains(evt.getPoint())) {
+                    return;
+                }
+                Material material = model.getElementAt(index);
+                String button = renderer.buttonAt(list, evt.getPoint());
+                if (MaterialCardRenderer.VIEW.equals(button) || (button == null && evt.getClickCount() == 2)) {
+                    handleMaterialClick(material);
+                } else if (MaterialCardRenderer.RATE.equals(button)) {
+                    rateMaterial(material);
+                }
+            }
+        });
+        list.getInputMap().put(KeyStroke.getKeyStroke("ENTER"), "openMaterial");
+        list.getActionMap().put("openMaterial", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                Material material = list.getSelectedValue();
+                if (material != null) {
+                    handleMaterialClick(material);
+                }
+            }
+        });
 
-        buttonPanel.add(viewButton);
-        buttonPanel.add(rateButton);
+        JScrollPane scrollPane = new JScrollPane(list);
+        scrollPane.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        scrollPane.setBackground(UITheme.APP_BACKGROUND);
+        scrollPane.getVerticalScrollBar().setUnitIncrement(MaterialCardRenderer.getCellHeight() / 4);
+        sectionPanel.add(scrollPane, BorderLayout.CENTER);
 
-        panel.add(infoPanel, BorderLayout.CENTER);
-        panel.add(buttonPanel, BorderLayout.EAST);
-        
-        // Set fixed height for uniform cards
-        int cardHeight = 120;
-        panel.setMinimumSize(new Dimension(400, cardHeight));
-        panel.setPreferredSize(new Dimension(600, cardHeight));
-        panel.setMaximumSize(new Dimension(Integer.MAX_VALUE, cardHeight));
+        Runnable updateStatus = () -> {
+            statusLabel.setVisible(model.getSize() == 0 || model.hasFailed());
+            if (model.hasFailed()) {
+                statusLabel.setText("Error loading materials.");
+            } else {
+                statusLabel.setText(model.isLoadingFirstPage() ? "Loading materials..." : "No materials to display.");
+            }
+        };
+        model.addListDataListener(new javax.swing.event.ListDataListener() {
+            @Override
+            public void intervalAdded(javax.swing.event.ListDataEvent e) {
+                updateStatus.run();
+            }
+
+            @Override
+            public void intervalRemoved(javax.swing.event.ListDataEvent e) {
+                updateStatus.run();
+            }
+
+            @Override
+            public void contentsChanged(javax.swing.event.ListDataEvent e) {
+                updateStatus.run();
+            }
+        });
+        model.installOn(list, scrollPane);
+        updateStatus.run();
 
-        return panel;
+        return sectionPanel;
     }
 
     private void handleMaterialClick(Material material) {
-        try {
-            String path = material.getFilePath();
-            if (path != null && (path.startsWith("http://") || path.startsWith("https://"))) {
-                // Handle remote files
-                try {
-                    Desktop.getDesktop().browse(new java.net.URI(path));
-                } catch (Exception ex) {
-                    JOptionPane.showMessageDialog(this, "Could not open link: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-                }
-            } else {
-                // Handle local files
-                java.io.File fileToOpen = new java.io.File(path);
-                if (fileToOpen.exists() && Desktop.isDesktopSupported()) {
-                    Desktop.getDesktop().open(fileToOpen);
-                } else {
-                    JOptionPane.showMessageDialog(this, "File not found at path: " + path, "File Error", JOptionPane.ERROR_MESSAGE);
-                }
-            }
-        } catch (Exception ex) {
-            JOptionPane.showMessageDialog(this, "Could not open file: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+        if (!Desktop.isDesktopSupported()) {
+            JOptionPane.showMessageDialog(this, "Cannot open files on this platform.", "Error", JOptionPane.ERROR_MESSAGE);
+            return;
         }
+        // Remote files are downloaded once into the local cache and opened from disk after that
+        AsyncDAO.onEdt(AsyncDAO.supply(() -> MaterialFileCache.getInstance().fetch(material)), path -> {
+            try {
+                Desktop.getDesktop().open(path.toFile());
+            } catch (Exception ex) {
+                JOptionPane.showMessageDialog(this, "Could not open file: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+            }
+        }, ex -> JOptionPane.showMessageDialog(this, "Could not open file: " + ex.getMessage(), "File Error", JOptionPane.ERROR_MESSAGE));
     }
     
     private void rateMaterial(Material material) {
-        try {
-            long materialId = material.getId();
-            
-            // Get current user rating
-            int currentRating = materialDAO.getUserRating(materialId, loggedInUser.getId());
-            
+        long materialId = material.getId();
+
+        // Get current user rating
+        AsyncDAO.onEdt(AsyncDAO.supply(() -> materialDAO.getUserRating(materialId, loggedInUser.getId())), currentRating -> {
             // Show rating dialog
             String[] options = {"1 Star", "2 Stars", "3 Stars", "4 Stars", "5 Stars"};
             String message = "Rate: " + material.getTitle() + 
@@ -190,19 +234,17 @@ public class FeedPanel extends JPanel {
             
             if (choice >= 0) {
                 int rating = choice + 1;
-                materialDAO.addOrUpdateRating(materialId, loggedInUser.getId(), rating);
-                JOptionPane.showMessageDialog(this, "Rating saved successfully!", "Success", JOptionPane.INFORMATION_MESSAGE);
-                
-                // --- THIS IS THE FIX ---
-                // Instead of reloading the whole app, just rebuild this panel's feeds.
-                // This is very fast and won't trigger the loading circle.
-                buildFeeds();
-                // ---------------------
+                AsyncDAO.onEdt(AsyncDAO.supply(() -> materialDAO.addOrUpdateRating(materialId, loggedInUser.getId(), rating)), newAverage -> {
+                    // Every open feed and table updates or re-ranks the card in place; nothing is re-queried
+                    MaterialEvents.fireRatingChanged(material, newAverage);
+                    JOptionPane.showMessageDialog(this, "Rating saved successfully!", "Success", JOptionPane.INFORMATION_MESSAGE);
+                }, this::showRatingError);
             }
-            
-        } catch (SQLException e) {
-            JOptionPane.showMessageDialog(this, "Error rating material: " + e.getMessage(), "Database Error", JOptionPane.ERROR_MESSAGE);
-        }
+        }, this::showRatingError);
+    }
+
+    private void showRatingError(Throwable e) {
+        JOptionPane.showMessageDialog(this, "Error rating material: " + e.getMessage(), "Database Error", JOptionPane.ERROR_MESSAGE);
     }
 }
 
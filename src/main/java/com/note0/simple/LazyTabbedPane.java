@@ -0,0 +1,142 @@
+package com.note0.simple;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * A JTabbedPane whose tabs can be built the first time they are selected.
+ * Until then a lazy tab only holds a light placeholder; when it is selected its data
+ * is fetched in the background and the real content replaces the placeholder.
+ *
+ * Tabs listed in the system property note0.tabs.prewarm (comma-separated titles,
+ * e.g. "Browse,My Uploads") are loaded shortly after {@link #prewarmConfigured()} is called,
+ * even if nobody selects them.
+ */
+public class LazyTabbedPane extends JTabbedPane {
+
+    private static final int PREWARM_DELAY_MS = Integer.getInteger("note0.tabs.prewarmDelayMs", 3000);
+
+    private final Map<Component, LazyTab<?>> lazyTabs = new HashMap<>();
+
+    public LazyTabbedPane() {
+        addChangeListener(e -> {
+            LazyTab<?> tab = lazyTabs.get(getSelectedComponent());
+            if (tab != null) {
+                tab.load();
+            }
+        });
+    }
+
+    /**
+     * Adds a tab whose content is built when it is first selected.
+     * @param build Creates the content on the EDT
+     */
+    public void addLazyTab(String title, Supplier<Component> build) {
+        addLazyTab(title, () -> CompletableFuture.completedFuture(null), data -> build.get());
+    }
+
+    /**
+     * Adds a tab whose data is fetched and content built when it is first selected.
+     * @param fetch Starts fetching the tab's data in the background, usually through AsyncDAO
+     * @param build Creates the content from the fetched data on the EDT
+     */
+    public <T> void addLazyTab(String title, Supplier<CompletableFuture<T>> fetch, Function<T, Component> build) {
+        JPanel placeholder = new JPanel(new GridBagLayout());
+        placeholder.setBackground(UITheme.APP_BACKGROUND);
+        LazyTab<T> tab = new LazyTab<>(placeholder, fetch, build);
+        lazyTabs.put(placeholder, tab);
+        addTab(title, placeholder);
+        if (getSelectedComponent() == placeholder) {
+            tab.load(); // The first tab added is selected right away
+        }
+    }
+
+    /**
+     * Loads the lazy tabs with the given titles if they have not been loaded yet.
+     */
+    public void prewarm(Collection<String> titles) {
+        for (String title : titles) {
+            int index = indexOfTab(title.trim());
+            LazyTab<?> tab = index >= 0 ? lazyTabs.get(getComponentAt(index)) : null;
+            if (tab != null) {
+                tab.load();
+            }
+        }
+    }
+
+    /**
+     * Schedules the tabs named in note0.tabs.prewarm to be loaded once the UI had a moment to settle.
+     */
+    public void prewarmConfigured() {
+        String configured = System.getProperty("note0.tabs.prewarm", "");
+        if (configured.isBlank()) {
+            return;
+        }
+        List<String> titles = new ArrayList<>(Arrays.asList(configured.split(",")));
+        Timer timer = new Timer(PREWARM_DELAY_MS, e -> prewarm(titles));
+        timer.setRepeats(false);
+        timer.start();
+    }
+
+    @Override
+    public void removeTabAt(int index) {
+        lazyTabs.remove(getComponentAt(index));
+        super.removeTabAt(index);
+    }
+
+    private class LazyTab<T> {
+        private final JPanel placeholder;
+        private final Supplier<CompletableFuture<T>> fetch;
+        private final Function<T, Component> build;
+        private boolean started;
+
+        LazyTab(JPanel placeholder, Supplier<CompletableFuture<T>> fetch, Function<T, Component> build) {
+            this.placeholder = placeholder;
+            this.fetch = fetch;
+            this.build = build;
+        }
+
+        void load() {
+            if (started) {
+                return;
+            }
+            started = true;
+            showMessage(new JLabel("Loading..."));
+            AsyncDAO.onEdt(fetch.get(), data -> {
+                int index = indexOfComponent(placeholder);
+                if (index < 0) {
+                    return; // The tab was removed while loading
+                }
+                lazyTabs.remove(placeholder);
+                setComponentAt(index, build.apply(data));
+            }, error -> {
+                error.printStackTrace();
+                started = false;
+                JButton retryButton = new JButton("Retry");
+                UITheme.styleSecondaryButton(retryButton);
+                retryButton.addActionListener(e -> load());
+                JPanel errorPanel = new JPanel(new FlowLayout());
+                errorPanel.setBackground(UITheme.APP_BACKGROUND);
+                errorPanel.add(new JLabel("Could not load this tab: " + error.getMessage()));
+                errorPanel.add(retryButton);
+                showMessage(errorPanel);
+            });
+        }
+
+        private void showMessage(JComponent message) {
+            placeholder.removeAll();
+            placeholder.add(message);
+            placeholder.revalidate();
+            placeholder.repaint();
+        }
+    }
+}
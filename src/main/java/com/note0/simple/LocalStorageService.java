@@ -0,0 +1,139 @@
+package com.note0.simple;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+
+/**
+ * Stores uploaded files in a directory instead of Cloudinary, e.g. a campus file server mounted
+ * on every client, or a local folder for working offline. Selected with -Dnote0.storage=local;
+ * the directory is -Dnote0.storage.dir (default ~/.note0/storage).
+ *
+ * Files are copied with FileChannel.transferTo, which lets the operating system move the bytes
+ * without passing them through the Java heap, and the stored path is saved as file_path. Stored
+ * files are opened in place, so reading them needs no copy at all.
+ */
+public class LocalStorageService implements StorageService {
+
+    // Progress is reported after each slice; a single transferTo call may also copy less than asked
+    private static final long TRANSFER_SLICE = 8L * 1024 * 1024;
+
+    private final Path root;
+
+    /**
+     * @param root The directory that holds the stored files
+     */
+    public LocalStorageService(Path root) {
+        this.root = root.toAbsolutePath().normalize();
+    }
+
+    static LocalStorageService fromConfiguration() {
+        String configured = System.getProperty("note0.storage.dir");
+        Path root = configured != null && !configured.isBlank() ? Paths.get(configured) : AppPaths.home().resolve("storage");
+        System.out.println("LocalStorageService: Storing uploads in " + root.toAbsolutePath());
+        return new LocalStorageService(root);
+    }
+
+    /**
+     * Copies the file to root/folder/publicIdHint.ext. The copy is written to a .part file
+     * first and renamed when complete, so a stored path never points at a half-written file.
+     * The checkpoint is not used: an interrupted copy simply starts again.
+     */
+    @Override
+    public String uploadFile(File file, String folder, String publicIdHint, UploadProgress progress,
+                             ChunkCheckpoint checkpoint) throws IOException {
+        if (!file.isFile() || !file.canRead()) {
+            throw new FileNotFoundException("File not found or unreadable: " + file);
+        }
+        String safeFolder = (folder == null || folder.isBlank()) ? "note0" : folder;
+        Path directory = root.resolve(safeFolder).normalize();
+        String name = (publicIdHint != null ? publicIdHint : UUID.randomUUID().toString()) + extensionOf(file.getName());
+        Path target = directory.resolve(name).normalize();
+        if (!target.startsWith(root)) {
+            throw new UploadException("Invalid storage path: " + safeFolder + "/" + name, 0, false);
+        }
+        Files.createDirectories(directory);
+        Path part = directory.resolve(name + ".part");
+
+        try (FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(part, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            long size = in.size();
+            long position = 0;
+            while (position < size) {
+                long copied = in.transferTo(position, Math.min(TRANSFER_SLICE, size - position), out);
+                if (copied == 0 && position >= in.size()) {
+                    // Without this the loop would spin forever on a file truncated during the copy
+                    throw new IOException("File shrank while it was being stored: " + file);
+                }
+                position += copied;
+                if (progress != null) {
+                    progress.update(position, size);
+                }
+            }
+            out.force(true);
+        } catch (IOException e) {
+            Files.deleteIfExists(part);
+            throw e;
+        }
+        try {
+            Files.move(part, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            // Some network file systems cannot rename atomically
+            Files.move(part, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return target.toString();
+    }
+
+    /**
+     * Deletes a stored file. Paths outside the storage directory are never deleted.
+     */
+    @Override
+    public boolean deleteFile(String fileUrl) {
+        if (fileUrl == null || fileUrl.isBlank()) {
+            System.err.println("LocalStorageService: File path is null or blank");
+            return false;
+        }
+        Path path = Paths.get(fileUrl).toAbsolutePath().normalize();
+        if (!path.startsWith(root)) {
+            System.err.println("LocalStorageService: Not deleting " + fileUrl + ", it is outside " + root);
+            return false;
+        }
+        try {
+            return Files.deleteIfExists(path);
+        } catch (IOException e) {
+            System.err.println("LocalStorageService: Could not delete " + fileUrl + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * @return true for files that exist inside the storage directory.
+     */
+    @Override
+    public boolean canServe(String fileUrl) {
+        if (fileUrl == null || fileUrl.isBlank() || fileUrl.contains("://")) {
+            return false;
+        }
+        try {
+            Path path = Paths.get(fileUrl).toAbsolutePath().normalize();
+            return path.startsWith(root) && Files.isRegularFile(path);
+        } catch (InvalidPathException e) {
+            return false;
+        }
+    }
+
+    private static String extensionOf(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        return dot > 0 ? fileName.substring(dot).toLowerCase() : "";
+    }
+}
@@ -2,7 +2,7 @@ package com.note0.simple;
 
 import javax.swing.*;
 import java.awt.*;
-import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
 
 public class LoginPanel extends JPanel {
 
@@ -10,7 +10,8 @@ public class LoginPanel extends JPanel {
     private final UserDAO userDAO;
     private final MaterialDAO materialDAO;
     private final SubjectDAO subjectDAO;
-    private final CloudinaryService cloudinaryService;
+    private final StorageService storageService;
+    private final MainAppLoader appLoader;
 
     private JTextField emailField = new JTextField(20);
     private JPasswordField passwordField = new JPasswordField(20);
@@ -39,7 +40,8 @@ public class LoginPanel extends JPanel {
         // We need all the DAOs to pre-build the panels in the background
         this.materialDAO = new MaterialDAO();
         this.subjectDAO = new SubjectDAO();
-        this.cloudinaryService = new CloudinaryService();
+        this.storageService = mainFrame.getStorageService();
+        this.appLoader = new MainAppLoader(mainFrame, userDAO, materialDAO, subjectDAO, storageService);
 
 
         // --- UI Setup (No changes here) ---
@@ -93,7 +95,7 @@ public class LoginPanel extends JPanel {
     }
 
     /**
-     * Handles the login logic using a SwingWorker for a non-blocking UI.
+     * Handles the login logic in the background for a non-blocking UI.
      */
     private void handleLogin() {
         String email = emailField.getText();
@@ -107,78 +109,45 @@ public class LoginPanel extends JPanel {
         // Show the loading panel FIRST
         mainFrame.showLoadingPanel();
 
-        // Create a SwingWorker to run ALL database calls on a background thread
-        // It now returns a 'LoginResult' object
-        SwingWorker<LoginResult, Void> worker = new SwingWorker<LoginResult, Void>() {
-            
-            /**
-             * This runs on a background thread.
-             * No Swing UI code here!
-             */
-            @Override
-            protected LoginResult doInBackground() throws Exception {
-                // 1. First task: Log the user in
-                User user = userDAO.loginUser(email, password);
-                
-                if (user != null) {
-                    // 2. Second task: If login is successful, pre-build all panels
-                    // This is where all the *other* database calls will happen,
-                    // safely in the background.
-                    JTabbedPane tabbedPane = new JTabbedPane();
-                    tabbedPane.setFont(UITheme.LABEL_FONT);
-                    tabbedPane.setBackground(UITheme.APP_BACKGROUND);
-
-                    FeedPanel feedPanel = new FeedPanel(mainFrame, user, materialDAO, subjectDAO, cloudinaryService);
-                    tabbedPane.addTab("Home", feedPanel);
-
-                    DashboardPanel dashboardPanel = new DashboardPanel(mainFrame, user, materialDAO, subjectDAO, cloudinaryService);
-                    tabbedPane.addTab("Browse", dashboardPanel);
-                    
-                    ProfilePanel profilePanel = new ProfilePanel(userDAO, user);
-                    tabbedPane.addTab("Profile", profilePanel);
-
-                    if ("ADMIN".equals(user.getRole())) {
-                        AdminPanel adminPanel = new AdminPanel(subjectDAO, materialDAO, cloudinaryService);
-                        tabbedPane.addTab("Admin", adminPanel);
+        // Log in on a background thread. The feeds and subjects do not depend on the user,
+        // so they are fetched while the password hash is being checked; if the login
+        // succeeds, MainAppLoader builds the panels from them on the EDT.
+        MainAppLoader.Timings timings = new MainAppLoader.Timings();
+        long loginStart = System.nanoTime();
+        CompletableFuture<MainAppData> homeData = appLoader.prefetchHomeData(timings);
+        CompletableFuture<LoginResult> result = AsyncDAO.supply(() -> userDAO.loginUser(email, password))
+                .thenCompose(user -> {
+                    timings.record("login", loginStart);
+                    if (user == null) {
+                        // Login failed; nobody gets to see the prefetched data
+                        homeData.cancel(true);
+                        return CompletableFuture.completedFuture(new LoginResult(null, null));
                     }
-                    
-                    // Return the fully-built result
-                    return new LoginResult(user, tabbedPane);
-                } else {
-                    // Login failed, return null
-                    return new LoginResult(null, null);
-                }
+                    return appLoader.load(user, timings, homeData).thenApply(tabbedPane -> new LoginResult(user, tabbedPane));
+                });
+        // An error during login must not leave the prefetch result lying around either
+        result.whenComplete((loginResult, error) -> {
+            if (error != null) {
+                homeData.cancel(true);
             }
-
-            /**
-             * This runs on the UI thread after doInBackground() finishes.
-             * Safe to update the UI here.
-             */
-            @Override
-            protected void done() {
-                try {
-                    LoginResult result = get(); // Get the result from doInBackground()
-                    
-                    if (result.user != null) {
-                        // Success! Show the main app feed.
-                        // This is now an INSTANT operation because the pane is already built.
-                        mainFrame.showFeedPanel(result.tabbedPane);
-                    } else {
-                        // Login failed, show error and go back to login panel
-                        JOptionPane.showMessageDialog(mainFrame, "Invalid email or password.", "Login Failed", JOptionPane.ERROR_MESSAGE);
-                        mainFrame.showLoginPanel();
-                    }
-                } catch (Exception e) {
-                    // Database or other error, show error and go back to login panel
-                    JOptionPane.showMessageDialog(mainFrame, "Database error during login: " + e.getMessage(), "Database Error", JOptionPane.ERROR_MESSAGE);
-                    mainFrame.showLoginPanel();
-                    e.printStackTrace();
-                }
+        });
+
+        AsyncDAO.onEdt(result, loginResult -> {
+            if (loginResult.user != null) {
+                // Success! Show the main app feed.
+                // This is now an INSTANT operation because the pane is already built.
+                mainFrame.showFeedPanel(loginResult.tabbedPane);
+            } else {
+                // Login failed, show error and go back to login panel
+                JOptionPane.showMessageDialog(mainFrame, "Invalid email or password.", "Login Failed", JOptionPane.ERROR_MESSAGE);
+                mainFrame.showLoginPanel();
             }
-        };
-
-        // Start the worker
-        worker.execute();
+        }, e -> {
+            // Database or other error, show error and go back to login panel
+            JOptionPane.showMessageDialog(mainFrame, "Database error during login: " + e.getMessage(), "Database Error", JOptionPane.ERROR_MESSAGE);
+            mainFrame.showLoginPanel();
+            e.printStackTrace();
+        });
     }
 }
 
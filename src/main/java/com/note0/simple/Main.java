@@ -2,7 +2,6 @@ package com.note0.simple;
 
 import com.formdev.flatlaf.FlatDarkLaf; // <-- 1. IMPORT THE DARK THEME
 import javax.swing.SwingUtilities;
-import java.sql.SQLException;
 
 /**
  * The main entry point for the Note0 Desktop Application.
@@ -25,19 +24,27 @@ public class Main {
         }
         // ------------------------------------------
 
+        // Open the first pooled database connections while the login screen is shown,
+        // so the first query does not pay for the TLS handshake, bring the schema
+        // up to date (a single version check when it already is), and detect it once.
+        // Queries started before the migration has finished, e.g. the login, wait for it.
+        DatabaseMigration.scheduleStartup();
+        Thread warmUpThread = new Thread(() -> {
+            DatabaseManager.warmUp();
+            DatabaseMigration.migrateOnStartup(); // First, since database users wait for it
+            SchemaCapabilities.get();
+            PasswordHasher.warmUp();
+            MaterialChangeListener.start();
+            MaterialCatalogSnapshot.getInstance().warmUp();
+        }, "note0-db-warmup");
+        warmUpThread.setDaemon(true);
+        warmUpThread.start();
+
         // Schedule a job for the event dispatch thread:
         // creating and showing this application's GUI.
         SwingUtilities.invokeLater(new Runnable() {
             @Override
             public void run() {
-                // Create admin user if it doesn't exist
-                try {
-                    UserDAO userDAO = new UserDAO();
-                    userDAO.createAdminUser();
-                } catch (SQLException e) {
-                    System.err.println("Error creating admin user: " + e.getMessage());
-                }
-                
                 // Create the main application frame and make it visible.
                 // The MainFrame will handle all other components and logic from here.
                 new MainFrame().setVisible(true);
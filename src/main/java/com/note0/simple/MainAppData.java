@@ -0,0 +1,48 @@
+package com.note0.simple;
+
+import java.util.List;
+
+/**
+ * Data the main app panels show when they first appear, fetched by MainAppLoader before the panel is built.
+ * Any part may be null if it was not (or could not be) preloaded; the panel then loads it on its own.
+ */
+public class MainAppData {
+    private final MaterialPage recentPage;
+    private final MaterialPage topRatedPage;
+    private final SubjectCatalog subjectCatalog;
+    private final MaterialPage firstBrowsePage;
+    private final List<Material> myUploads;
+    private final List<Material> pendingMaterials;
+
+    public MainAppData(MaterialPage recentPage, MaterialPage topRatedPage, SubjectCatalog subjectCatalog,
+                       MaterialPage firstBrowsePage, List<Material> myUploads, List<Material> pendingMaterials) {
+        this.recentPage = recentPage;
+        this.topRatedPage = topRatedPage;
+        this.subjectCatalog = subjectCatalog;
+        this.firstBrowsePage = firstBrowsePage;
+        this.myUploads = myUploads;
+        this.pendingMaterials = pendingMaterials;
+    }
+
+    /**
+     * @return The first page of the Recent feed.
+     */
+    public MaterialPage getRecentPage() { return recentPage; }
+
+    /**
+     * @return The first page of the Recommended and Popular feeds.
+     */
+    public MaterialPage getTopRatedPage() { return topRatedPage; }
+    public SubjectCatalog getSubjectCatalog() { return subjectCatalog; }
+
+    /**
+     * @return The first Browse page with no filters applied.
+     */
+    public MaterialPage getFirstBrowsePage() { return firstBrowsePage; }
+    public List<Material> getMyUploads() { return myUploads; }
+
+    /**
+     * @return The moderation queue; null for users who are not admins.
+     */
+    public List<Material> getPendingMaterials() { return pendingMaterials; }
+}
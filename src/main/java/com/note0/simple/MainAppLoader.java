@@ -0,0 +1,181 @@
+package com.note0.simple;
+
+import javax.swing.*;
+import java.awt.Component;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Builds the main application tabs after login.
+ * Only the Home tab is built before the app is shown; its data is fetched first.
+ * The other tabs are lazy: each fetches its data concurrently and is built on the
+ * event dispatch thread the first time it is selected (or when it is pre-warmed).
+ */
+public class MainAppLoader {
+
+    private final MainFrame mainFrame;
+    private final UserDAO userDAO;
+    private final MaterialDAO materialDAO;
+    private final SubjectDAO subjectDAO;
+    private final StorageService storageService;
+
+    public MainAppLoader(MainFrame mainFrame, UserDAO userDAO, MaterialDAO materialDAO, SubjectDAO subjectDAO, StorageService storageService) {
+        this.mainFrame = mainFrame;
+        this.userDAO = userDAO;
+        this.materialDAO = materialDAO;
+        this.subjectDAO = subjectDAO;
+        this.storageService = storageService;
+    }
+
+    /**
+     * Fetches the data for the Home tab and builds the tabs.
+     * @param user The logged-in user
+     * @param timings Collects the duration of each phase; printed once the tabs are built
+     * @return A future completed on the EDT with the tabs, ready to be shown
+     */
+    public CompletableFuture<JTabbedPane> load(User user, Timings timings) {
+        return load(user, timings, fetchHomeData(timings));
+    }
+
+    /**
+     * Builds the tabs from Home data that is already being fetched, e.g. by {@link #prefetchHomeData}.
+     */
+    public CompletableFuture<JTabbedPane> load(User user, Timings timings, CompletableFuture<MainAppData> homeData) {
+        long fetchStart = System.nanoTime();
+        return homeData.thenApplyAsync(data -> {
+            timings.record("fetch", fetchStart);
+            long buildStart = System.nanoTime();
+            JTabbedPane tabbedPane = buildTabs(user, data);
+            timings.record("build", buildStart);
+            System.out.println("Startup timings: " + timings);
+            return tabbedPane;
+        }, AsyncDAO.EDT);
+    }
+
+    /**
+     * Fetches what the Home tab shows first. The other feed tabs load when selected.
+     */
+    public CompletableFuture<MainAppData> fetchHomeData(Timings timings) {
+        return fetch("recent", timings, () -> materialDAO.getRecentMaterialsPage(null, FeedListModel.PAGE_SIZE))
+                .thenApply(recent -> new MainAppData(recent, null, null, null, null, null));
+    }
+
+    /**
+     * Fetches everything the first screen shows that does not depend on who is logged in:
+     * the recent and top-rated feeds and the subject catalog. Meant to be started before
+     * the password check finishes; the catalog and feeds also land in the shared caches.
+     * If the login fails, the caller simply drops (or cancels) the returned future.
+     */
+    public CompletableFuture<MainAppData> prefetchHomeData(Timings timings) {
+        CompletableFuture<MaterialPage> recent = fetch("recent", timings, () -> materialDAO.getRecentMaterialsPage(null, FeedListModel.PAGE_SIZE));
+        CompletableFuture<MaterialPage> topRated = fetch("topRated", timings, () -> materialDAO.getTopRatedMaterialsPage(null, FeedListModel.PAGE_SIZE));
+        CompletableFuture<SubjectCatalog> subjects = fetch("subjects", timings, () -> subjectDAO.getCatalog());
+        return CompletableFuture.allOf(recent, topRated, subjects)
+                .thenApply(ignored -> new MainAppData(recent.join(), topRated.join(), subjects.join(), null, null, null));
+    }
+
+    /**
+     * Fetches the subject catalog and the first unfiltered Browse page concurrently.
+     */
+    public CompletableFuture<MainAppData> fetchBrowseData(Timings timings) {
+        CompletableFuture<SubjectCatalog> subjects = fetch("subjects", timings, () -> subjectDAO.getCatalog());
+        CompletableFuture<MaterialPage> browse = fetch("browse", timings,
+                () -> materialDAO.getMaterialsPage(null, "All Subjects", null, BrowseTableModel.PAGE_SIZE));
+        return CompletableFuture.allOf(subjects, browse)
+                .thenApply(ignored -> new MainAppData(null, null, subjects.join(), browse.join(), null, null));
+    }
+
+    /**
+     * Fetches the subject catalog and the moderation queue concurrently.
+     */
+    public CompletableFuture<MainAppData> fetchAdminData(Timings timings) {
+        CompletableFuture<SubjectCatalog> subjects = fetch("subjects", timings, () -> subjectDAO.getCatalog());
+        CompletableFuture<List<Material>> pending = fetch("pending", timings, () -> materialDAO.getPendingMaterials());
+        return CompletableFuture.allOf(subjects, pending)
+                .thenApply(ignored -> new MainAppData(null, null, subjects.join(), null, null, pending.join()));
+    }
+
+    /**
+     * Creates the Home tab from preloaded data and adds the others as lazy tabs. Must be called on the EDT.
+     */
+    public JTabbedPane buildTabs(User user, MainAppData homeData) {
+        LazyTabbedPane tabbedPane = new LazyTabbedPane();
+        tabbedPane.setFont(UITheme.LABEL_FONT);
+        tabbedPane.setBackground(UITheme.APP_BACKGROUND);
+
+        FeedPanel feedPanel = new FeedPanel(mainFrame, user, materialDAO, subjectDAO, storageService, homeData);
+        tabbedPane.addTab("Home", feedPanel);
+
+        // Uploads the user left unfinished in an earlier session continue in the background
+        mainFrame.getUploadManager().resume(user.getId());
+
+        addTimedTab(tabbedPane, "Browse", this::fetchBrowseData,
+                data -> new DashboardPanel(mainFrame, user, materialDAO, subjectDAO, storageService, data));
+
+        tabbedPane.addLazyTab("Profile", () -> new ProfilePanel(userDAO, user));
+
+        if ("ADMIN".equals(user.getRole())) {
+            addTimedTab(tabbedPane, "Admin", this::fetchAdminData,
+                    data -> new AdminPanel(subjectDAO, materialDAO, storageService, data));
+        }
+
+        tabbedPane.prewarmConfigured();
+        return tabbedPane;
+    }
+
+    /**
+     * Adds a lazy tab and prints how long its fetch and build took once it is loaded.
+     */
+    private static void addTimedTab(LazyTabbedPane tabbedPane, String title,
+                                    Function<Timings, CompletableFuture<MainAppData>> fetch,
+                                    Function<MainAppData, Component> build) {
+        Timings timings = new Timings();
+        long[] fetchStart = new long[1];
+        tabbedPane.addLazyTab(title, () -> {
+            fetchStart[0] = System.nanoTime();
+            return fetch.apply(timings);
+        }, data -> {
+            timings.record("fetch", fetchStart[0]);
+            long buildStart = System.nanoTime();
+            Component content = build.apply(data);
+            timings.record("build", buildStart);
+            System.out.println(title + " tab timings: " + timings);
+            return content;
+        });
+    }
+
+    private static <T> CompletableFuture<T> fetch(String phase, Timings timings, AsyncDAO.Call<T> call) {
+        return AsyncDAO.supply(() -> {
+            long start = System.nanoTime();
+            try {
+                return call.call();
+            } finally {
+                timings.record(phase, start);
+            }
+        }).exceptionally(e -> {
+            System.err.println("Could not preload " + phase + ": " + AsyncDAO.unwrap(e).getMessage());
+            return null;
+        });
+    }
+
+    /**
+     * Wall-clock duration of each startup phase, in the order the phases finished.
+     */
+    public static class Timings {
+        private final List<String> phases = new ArrayList<>();
+
+        /**
+         * Records a phase that started at the given System.nanoTime() and ends now.
+         */
+        public synchronized void record(String phase, long startNanos) {
+            phases.add(phase + " " + (System.nanoTime() - startNanos) / 1_000_000 + " ms");
+        }
+
+        @Override
+        public synchronized String toString() {
+            return String.join(", ", phases);
+        }
+    }
+}
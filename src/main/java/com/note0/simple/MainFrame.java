@@ -11,7 +11,8 @@ public class MainFrame extends JFrame {
     private final UserDAO userDAO;
     private final MaterialDAO materialDAO;
     private final SubjectDAO subjectDAO;
-    private final CloudinaryService cloudinaryService;
+    private final StorageService storageService;
+    private final UploadManager uploadManager;
 
     // Define panel names as constants for easy reference
     public static final String LOGIN_PANEL_ID = "LOGIN_PANEL";
@@ -24,7 +25,8 @@ public class MainFrame extends JFrame {
         this.userDAO = new UserDAO();
         this.materialDAO = new MaterialDAO();
         this.subjectDAO = new SubjectDAO();
-        this.cloudinaryService = new CloudinaryService();
+        this.storageService = StorageService.create();
+        this.uploadManager = new UploadManager(storageService, materialDAO);
 
         setTitle("Note0 - Note Sharing Application");
         setSize(1024, 768);
@@ -54,6 +56,20 @@ public class MainFrame extends JFrame {
         cardLayout.show(mainPanel, LOGIN_PANEL_ID);
     }
 
+    /**
+     * @return Where uploaded files are stored, selected with -Dnote0.storage.
+     */
+    public StorageService getStorageService() {
+        return storageService;
+    }
+
+    /**
+     * @return The background upload queue shared by every panel of this window.
+     */
+    public UploadManager getUploadManager() {
+        return uploadManager;
+    }
+
     public void showLoginPanel() {
         // Clear the main app panel when logging out to save memory
         Component[] components = mainPanel.getComponents();
@@ -81,7 +97,7 @@ public class MainFrame extends JFrame {
      * Shows the main application panel.
      * This method now just adds a pre-built JTabbedPane,
      * making it an instantaneous UI operation.
-     * * @param tabbedPane The fully constructed JTabbedPane from the SwingWorker
+     * * @param tabbedPane The fully constructed JTabbedPane from MainAppLoader
      */
     public void showFeedPanel(JTabbedPane tabbedPane) {
         // We must remove the old app panel if one exists (e.g., from a previous login)
@@ -120,8 +136,8 @@ public class MainFrame extends JFrame {
     }
 
     /**
-     * Shows the loading screen, builds all main app panels in a background
-     * thread, and then switches to the main app panel.
+     * Shows the loading screen, fetches the data for all main app panels in the
+     * background, and then builds them and switches to the main app panel.
      * This is the "correct" way to refresh or load the main app.
      * @param user The currently logged-in user.
      */
@@ -129,49 +145,16 @@ public class MainFrame extends JFrame {
         // 1. Show the loading panel
         showLoadingPanel();
 
-        // 2. Create a SwingWorker to build the UI in the background
-        SwingWorker<JTabbedPane, Void> worker = new SwingWorker<JTabbedPane, Void>() {
-            @Override
-            protected JTabbedPane doInBackground() throws Exception {
-                // This runs on a background thread
-                // Pre-build all panels here
-                JTabbedPane tabbedPane = new JTabbedPane();
-                tabbedPane.setFont(UITheme.LABEL_FONT);
-                tabbedPane.setBackground(UITheme.APP_BACKGROUND);
-
-                FeedPanel feedPanel = new FeedPanel(MainFrame.this, user, materialDAO, subjectDAO, cloudinaryService);
-                tabbedPane.addTab("Home", feedPanel);
-
-                DashboardPanel dashboardPanel = new DashboardPanel(MainFrame.this, user, materialDAO, subjectDAO, cloudinaryService);
-                tabbedPane.addTab("Browse", dashboardPanel);
-                
-                ProfilePanel profilePanel = new ProfilePanel(userDAO, user);
-                tabbedPane.addTab("Profile", profilePanel);
-
-                if ("ADMIN".equals(user.getRole())) {
-                    AdminPanel adminPanel = new AdminPanel(subjectDAO, materialDAO, cloudinaryService);
-                    tabbedPane.addTab("Admin", adminPanel);
-                }
-                
-                return tabbedPane;
-            }
-
-            @Override
-            protected void done() {
-                try {
-                    JTabbedPane tabbedPane = get(); // Get the pre-built pane
-                    // This is now an instant UI operation
-                    showFeedPanel(tabbedPane);
-                } catch (Exception e) {
-                    JOptionPane.showMessageDialog(MainFrame.this, "Error loading application: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-                    showLoginPanel(); // Send back to login on error
-                    e.printStackTrace();
-                }
-            }
-        };
-
-        // 3. Start the worker
-        worker.execute();
+        // 2. Fetch all panel data concurrently, then build the panels on the EDT
+        MainAppLoader loader = new MainAppLoader(this, userDAO, materialDAO, subjectDAO, storageService);
+        AsyncDAO.onEdt(loader.load(user, new MainAppLoader.Timings()), tabbedPane -> {
+            // This is now an instant UI operation
+            showFeedPanel(tabbedPane);
+        }, e -> {
+            JOptionPane.showMessageDialog(MainFrame.this, "Error loading application: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+            showLoginPanel(); // Send back to login on error
+            e.printStackTrace();
+        });
     }
 }
 
@@ -0,0 +1,113 @@
+package com.note0.simple;
+
+import javax.swing.*;
+import javax.swing.border.Border;
+import java.awt.*;
+
+/**
+ * Paints a feed card (thumbnail, title, subject, rating, View and Rate buttons) for a material.
+ * One instance is reused for every card, so a feed of thousands of materials only
+ * ever has the components of a single card. The buttons are only painted; FeedPanel
+ * finds out which one was clicked with {@link #buttonAt}.
+ */
+public class MaterialCardRenderer extends JPanel implements ListCellRenderer<Material> {
+
+    public static final int CARD_HEIGHT = 120;
+    private static final int CARD_GAP = 15;
+
+    public static final String VIEW = "View";
+    public static final String RATE = "Rate";
+
+    private final JPanel card = new JPanel(new BorderLayout(10, 10));
+    private final JLabel thumbnailLabel = new JLabel();
+    private final JLabel titleLabel = new JLabel();
+    private final JLabel subjectLabel = new JLabel();
+    private final JLabel ratingLabel = new JLabel();
+    private final JButton viewButton = new JButton(VIEW);
+    private final JButton rateButton = new JButton(RATE);
+    private final Border cardBorder = UITheme.createShadowBorder();
+    private final Border selectedCardBorder = BorderFactory.createLineBorder(UITheme.ACCENT_COLOR, 2);
+    private final ThumbnailService thumbnails = ThumbnailService.getInstance();
+    private Runnable repaintList; // One callback per list, so waiting thumbnails do not collect duplicates
+
+    public MaterialCardRenderer() {
+        super(new BorderLayout());
+        setOpaque(true);
+        setBackground(UITheme.APP_BACKGROUND);
+        setBorder(BorderFactory.createEmptyBorder(0, 0, CARD_GAP, 0)); // Spacer between cards
+
+        card.setBackground(UITheme.CARD_BACKGROUND);
+        card.setBorder(cardBorder);
+
+        JPanel infoPanel = new JPanel();
+        infoPanel.setBackground(UITheme.CARD_BACKGROUND);
+        infoPanel.setLayout(new BoxLayout(infoPanel, BoxLayout.Y_AXIS));
+        titleLabel.setFont(UITheme.LABEL_FONT);
+        infoPanel.add(titleLabel);
+        infoPanel.add(subjectLabel);
+        infoPanel.add(ratingLabel);
+
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        buttonPanel.setBackground(UITheme.CARD_BACKGROUND);
+        UITheme.stylePrimaryButton(viewButton);
+        UITheme.styleSecondaryButton(rateButton);
+        buttonPanel.add(viewButton);
+        buttonPanel.add(rateButton);
+
+        thumbnailLabel.setPreferredSize(new Dimension(ThumbnailService.CARD_SIZE, ThumbnailService.CARD_SIZE));
+        card.add(thumbnailLabel, BorderLayout.WEST);
+        card.add(infoPanel, BorderLayout.CENTER);
+        card.add(buttonPanel, BorderLayout.EAST);
+        add(card, BorderLayout.CENTER);
+    }
+
+    /**
+     * @return The fixed height of a card including the gap below it, for JList.setFixedCellHeight.
+     */
+    public static int getCellHeight() {
+        return CARD_HEIGHT + CARD_GAP;
+    }
+
+    @Override
+    public Component getListCellRendererComponent(JList<? extends Material> list, Material material, int index,
+                                                  boolean isSelected, boolean cellHasFocus) {
+        if (repaintList == null) {
+            repaintList = list::repaint;
+        }
+        // Only painted cards ask for a thumbnail, so the list loads them as they scroll into view
+        thumbnailLabel.setIcon(thumbnails.get(material, ThumbnailService.CARD_SIZE, repaintList));
+        titleLabel.setText(material.getTitle());
+        subjectLabel.setText("Subject: " + material.getSubjectName());
+        ratingLabel.setText("Rating: " + String.format("%.1f", material.getAverageRating()));
+        card.setBorder(isSelected ? selectedCardBorder : cardBorder);
+        return this;
+    }
+
+    /**
+     * Finds the painted button under a point of the list.
+     * @return VIEW, RATE, or null if the point is not on a button
+     */
+    public String buttonAt(JList<Material> list, Point point) {
+        int index = list.locationToIndex(point);
+        if (index < 0) {
+            return null;
+        }
+        Rectangle cell = list.getCellBounds(index, index);
+        if (cell == null || !cell.contains(point)) {
+            return null;
+        }
+        // Lay the renderer out as it was painted for that cell, then look up the component under the point
+        getListCellRendererComponent(list, list.getModel().getElementAt(index), index, false, false);
+        setBounds(0, 0, cell.width, cell.height);
+        invalidate();
+        validate();
+        Component hit = SwingUtilities.getDeepestComponentAt(this, point.x - cell.x, point.y - cell.y);
+        if (hit == viewButton) {
+            return VIEW;
+        }
+        if (hit == rateButton) {
+            return RATE;
+        }
+        return null;
+    }
+}
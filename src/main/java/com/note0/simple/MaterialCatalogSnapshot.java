@@ -0,0 +1,339 @@
+package com.note0.simple;
+
+import java.math.BigInteger;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * In-memory copy of the approved materials, so that Browse can filter by subject and title
+ * without a round trip to the database. Enabled with -Dnote0.catalog.snapshot=true.
+ *
+ * The snapshot is loaded once and then refreshed with only the rows whose updated_at changed
+ * since the last refresh. A refresh happens on the next lookup after the MaterialQueryCache
+ * was invalidated (a local write or a change notification), or after
+ * -Dnote0.catalog.maxAgeMs (default 30 s) while change notifications are not being received.
+ * Deleted materials and renamed subjects or uploaders do not show up in the delta, so those
+ * cases fall back to a full reload; deletions are found by comparing a checksum of the approved
+ * ids with the database.
+ *
+ * Lookups walk an index by subject and a sorted index of the suffixes of every title word, in
+ * which the titles containing a word are found with one prefix range, then check the remaining
+ * candidates with the same case-insensitive substring match as the database's ILIKE. While the
+ * snapshot is enabled, Browse searches are answered this way too, newest first instead of by
+ * relevance.
+ */
+public class MaterialCatalogSnapshot {
+
+    private static final boolean ENABLED = Boolean.getBoolean("note0.catalog.snapshot");
+    private static final long MAX_AGE_MS = Long.getLong("note0.catalog.maxAgeMs", 30_000);
+    // Rows committed by a transaction that started before the last refresh carry an older
+    // updated_at, so each delta looks back a little further than the newest row seen
+    private static final long OVERLAP_MS = Long.getLong("note0.catalog.overlapMs", 5_000);
+
+    private static final String SELECT_MATERIALS =
+        "SELECT m.id, m.title, m.file_path, m.average_rating, u.full_name, s.name AS subject_name, " +
+        "       m.approval_status, m.updated_at " +
+        "FROM materials m " +
+        "JOIN users u ON m.uploader_id = u.id " +
+        "JOIN subjects s ON m.subject_id = s.id ";
+
+    private static final MaterialCatalogSnapshot INSTANCE = new MaterialCatalogSnapshot();
+
+    private final MaterialQueryCache queryCache = MaterialQueryCache.getInstance();
+    private final Object refreshLock = new Object();
+    private volatile State state;
+    private boolean warnedUnavailable;
+
+    public static MaterialCatalogSnapshot getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return true if the snapshot is switched on and the schema has materials.updated_at.
+     */
+    public boolean isEnabled() {
+        if (!ENABLED) {
+            return false;
+        }
+        if (!SchemaCapabilities.get().hasUpdatedAt()) {
+            if (!warnedUnavailable) {
+                warnedUnavailable = true;
+                System.err.println("MaterialCatalogSnapshot: materials.updated_at is missing, querying the database instead");
+            }
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Loads the snapshot in the background at startup, if it is enabled.
+     */
+    public void warmUp() {
+        if (isEnabled()) {
+            try {
+                current();
+            } catch (SQLException e) {
+                System.err.println("MaterialCatalogSnapshot: Initial load failed: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Filters the snapshot like MaterialDAO.getMaterialsPage, with the same id cursors.
+     * @param titleFilter Optional text the title must contain, ignoring case
+     * @param subjectFilter Optional subject name, or "All Subjects"
+     * @throws SQLException if the cursor is invalid, or the snapshot had to be refreshed and that failed
+     */
+    public MaterialPage getPage(String titleFilter, String subjectFilter, String cursor, int pageSize) throws SQLException {
+        long beforeId = Long.MAX_VALUE;
+        if (cursor != null) {
+            try {
+                beforeId = Long.parseLong(cursor);
+            } catch (NumberFormatException e) {
+                throw new SQLException("Invalid page cursor: " + cursor, e);
+            }
+        }
+        // One extra match tells whether another page exists
+        List<Material> materials = filter(current(), titleFilter, subjectFilter, beforeId, pageSize + 1);
+        String nextCursor = null;
+        if (materials.size() > pageSize) {
+            materials.remove(materials.size() - 1);
+            nextCursor = Long.toString(materials.get(materials.size() - 1).getId());
+        }
+        return new MaterialPage(materials, nextCursor);
+    }
+
+    /**
+     * @return The number of materials in the snapshot, or 0 before the first load.
+     */
+    public int size() {
+        State current = state;
+        return current == null ? 0 : current.materials.size();
+    }
+
+    private List<Material> filter(State snapshot, String titleFilter, String subjectFilter, long beforeId, int limit) {
+        BitSet candidates = new BitSet(snapshot.materials.size());
+        candidates.set(0, snapshot.materials.size());
+
+        if (subjectFilter != null && !subjectFilter.isBlank() && !subjectFilter.equals("All Subjects")) {
+            candidates.and(snapshot.bySubject.getOrDefault(subjectFilter, new BitSet()));
+        }
+
+        String needle = null;
+        if (titleFilter != null && !titleFilter.isBlank()) {
+            needle = titleFilter.trim().toLowerCase(Locale.ROOT);
+            // Every word of the filter lies inside one word of a matching title,
+            // so it is a prefix of one of that word's suffixes
+            for (String word : words(needle)) {
+                BitSet withWord = new BitSet();
+                for (BitSet titles : snapshot.byTitleSuffix.subMap(word, true, word + Character.MAX_VALUE, false).values()) {
+                    withWord.or(titles);
+                }
+                candidates.and(withWord);
+            }
+        }
+
+        List<Material> result = new ArrayList<>();
+        int start = firstIndexBefore(snapshot, beforeId);
+        for (int i = candidates.nextSetBit(start); i >= 0 && result.size() < limit; i = candidates.nextSetBit(i + 1)) {
+            if (needle == null || snapshot.lowerTitles[i].contains(needle)) {
+                result.add(snapshot.materials.get(i));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return The index of the first material with an id below beforeId (materials are sorted newest first).
+     */
+    private static int firstIndexBefore(State snapshot, long beforeId) {
+        int low = 0;
+        int high = snapshot.materials.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (snapshot.materials.get(mid).getId() >= beforeId) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static List<String> words(String lowerText) {
+        List<String> words = new ArrayList<>();
+        for (String word : lowerText.split("[^\\p{L}\\p{N}]+")) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Returns the snapshot, loading or refreshing it first if it may be out of date.
+     */
+    private State current() throws SQLException {
+        State current = state;
+        if (current != null && !isStale(current)) {
+            return current;
+        }
+        synchronized (refreshLock) {
+            current = state;
+            if (current != null && !isStale(current)) {
+                return current;
+            }
+            // Read before querying, so a change made during the refresh triggers another one
+            long invalidations = queryCache.getInvalidations();
+            long start = System.nanoTime();
+            boolean full = current == null;
+            State refreshed = full ? null : loadDelta(current, invalidations);
+            if (refreshed == null) {
+                refreshed = loadFull(invalidations);
+                full = true;
+            }
+            state = refreshed;
+            System.out.println("MaterialCatalogSnapshot: " + (full ? "Loaded " : "Refreshed ") + refreshed.materials.size()
+                    + " materials in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+            return refreshed;
+        }
+    }
+
+    private boolean isStale(State snapshot) {
+        if (snapshot.invalidations != queryCache.getInvalidations()) {
+            return true;
+        }
+        // Without change notifications a change by another client is only noticed by polling
+        return !queryCache.isLive() && System.currentTimeMillis() - snapshot.loadedAtMillis > MAX_AGE_MS;
+    }
+
+    private State loadFull(long invalidations) throws SQLException {
+        String sql = SELECT_MATERIALS + "WHERE m.approval_status = 'APPROVED' ORDER BY m.id DESC";
+        Map<Long, Material> byId = new HashMap<>();
+        long highWater;
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            highWater = readRows(pstmt, byId, 0);
+        }
+        return new State(byId, highWater, invalidations);
+    }
+
+    /**
+     * Applies the rows changed since the snapshot was taken.
+     * @return The new snapshot, or null if only a full reload can bring it up to date
+     */
+    private State loadDelta(State previous, long invalidations) throws SQLException {
+        Map<Long, Material> byId = new HashMap<>(previous.byId);
+        boolean sameIds;
+        long highWater;
+        try (Connection conn = DatabaseManager.getConnection()) {
+            try (PreparedStatement pstmt = conn.prepareStatement(SELECT_MATERIALS + "WHERE m.updated_at >= ?")) {
+                pstmt.setTimestamp(1, new Timestamp(previous.highWaterMillis - OVERLAP_MS));
+                highWater = readRows(pstmt, byId, previous.highWaterMillis);
+            }
+            // Deleted rows are not in the delta. Comparing only the count would miss a delete
+            // that coincides with an insert, so the sums of the ids and of their squares are compared too.
+            try (PreparedStatement pstmt = conn.prepareStatement(
+                    "SELECT COUNT(*), COALESCE(SUM(id), 0), COALESCE(SUM(id::numeric * id), 0) " +
+                    "FROM materials WHERE approval_status = 'APPROVED'");
+                 ResultSet rs = pstmt.executeQuery()) {
+                sameIds = rs.next() && rs.getLong(1) == byId.size()
+                        && rs.getBigDecimal(2).toBigInteger().equals(idSum(byId.keySet(), 1))
+                        && rs.getBigDecimal(3).toBigInteger().equals(idSum(byId.keySet(), 2));
+            }
+        }
+        if (!sameIds) {
+            return null; // Materials were deleted
+        }
+        boolean notified = previous.invalidations != invalidations;
+        if (notified && highWater == previous.highWaterMillis) {
+            return null; // The change was outside materials, e.g. a renamed subject or uploader
+        }
+        return new State(byId, highWater, invalidations);
+    }
+
+    /**
+     * @return The sum of the ids raised to the given power, matching the database's numeric SUM.
+     */
+    private static BigInteger idSum(Collection<Long> ids, int power) {
+        BigInteger sum = BigInteger.ZERO;
+        for (long id : ids) {
+            sum = sum.add(BigInteger.valueOf(id).pow(power));
+        }
+        return sum;
+    }
+
+    /**
+     * Reads material rows into byId; rows that are no longer approved are removed.
+     * @return The newest updated_at seen, in milliseconds, or highWater if none is newer
+     */
+    private static long readRows(PreparedStatement pstmt, Map<Long, Material> byId, long highWater) throws SQLException {
+        try (ResultSet rs = pstmt.executeQuery()) {
+            MaterialRowMapper mapper = MaterialRowMapper.forResultSet(rs);
+            int updatedAtColumn = rs.findColumn("updated_at");
+            while (rs.next()) {
+                Material material = mapper.map(rs);
+                if ("APPROVED".equals(material.getApprovalStatus())) {
+                    byId.put(material.getId(), material);
+                } else {
+                    byId.remove(material.getId());
+                }
+                Timestamp updatedAt = rs.getTimestamp(updatedAtColumn);
+                if (updatedAt != null) {
+                    highWater = Math.max(highWater, updatedAt.getTime());
+                }
+            }
+        }
+        return highWater;
+    }
+
+    /**
+     * One immutable version of the snapshot with its indexes; replaced as a whole on refresh.
+     */
+    private static class State {
+        final Map<Long, Material> byId;
+        final List<Material> materials; // Newest (highest id) first
+        final String[] lowerTitles;
+        final Map<String, BitSet> bySubject = new HashMap<>();
+        final NavigableMap<String, BitSet> byTitleSuffix = new TreeMap<>();
+        final long highWaterMillis;
+        final long invalidations;
+        final long loadedAtMillis = System.currentTimeMillis();
+
+        State(Map<Long, Material> byId, long highWaterMillis, long invalidations) {
+            this.byId = Collections.unmodifiableMap(byId);
+            this.highWaterMillis = highWaterMillis;
+            this.invalidations = invalidations;
+
+            List<Material> sorted = new ArrayList<>(byId.values());
+            sorted.sort((a, b) -> Long.compare(b.getId(), a.getId()));
+            this.materials = Collections.unmodifiableList(sorted);
+            this.lowerTitles = new String[sorted.size()];
+
+            for (int i = 0; i < sorted.size(); i++) {
+                Material material = sorted.get(i);
+                String title = material.getTitle() == null ? "" : material.getTitle().toLowerCase(Locale.ROOT);
+                lowerTitles[i] = title;
+                bySubject.computeIfAbsent(material.getSubjectName(), name -> new BitSet()).set(i);
+                for (String word : words(title)) {
+                    for (int start = 0; start < word.length(); start++) {
+                        byTitleSuffix.computeIfAbsent(word.substring(start), w -> new BitSet()).set(i);
+                    }
+                }
+            }
+        }
+    }
+}
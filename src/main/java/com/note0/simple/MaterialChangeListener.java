@@ -0,0 +1,72 @@
+package com.note0.simple;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Listens for the change notifications sent by the database triggers on the
+ * materials, ratings, subjects and users tables and clears the MaterialQueryCache
+ * whenever one arrives. Uses its own dedicated connection rather than a pooled one,
+ * because the connection stays open for as long as the application runs.
+ */
+public class MaterialChangeListener {
+
+    static final String CHANNEL = "note0_materials_changed";
+
+    private static final int POLL_TIMEOUT_MS = 10_000;
+    private static final long MAX_RECONNECT_DELAY_MS = 60_000;
+
+    private static Thread thread;
+
+    /**
+     * Starts the listener thread if it is not running yet.
+     */
+    public static synchronized void start() {
+        if (thread != null) {
+            return;
+        }
+        thread = new Thread(MaterialChangeListener::run, "note0-material-change-listener");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static void run() {
+        MaterialQueryCache cache = MaterialQueryCache.getInstance();
+        long reconnectDelay = 1_000;
+        while (!Thread.currentThread().isInterrupted()) {
+            try (Connection conn = DatabaseManager.openPhysicalConnection()) {
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute("LISTEN " + CHANNEL);
+                }
+                PGConnection pgConn = conn.unwrap(PGConnection.class);
+                // Anything cached before LISTEN took effect may already be stale
+                cache.setLive(true);
+                reconnectDelay = 1_000;
+                System.out.println("MaterialChangeListener: Listening on " + CHANNEL);
+
+                while (!Thread.currentThread().isInterrupted()) {
+                    PGNotification[] notifications = pgConn.getNotifications(POLL_TIMEOUT_MS);
+                    if (notifications != null && notifications.length > 0) {
+                        cache.invalidateAll();
+                    }
+                }
+            } catch (SQLException e) {
+                System.err.println("MaterialChangeListener: Connection lost: " + e.getMessage());
+            } finally {
+                // Without notifications the cache cannot know about other clients' changes
+                cache.setLive(false);
+            }
+
+            try {
+                Thread.sleep(reconnectDelay);
+            } catch (InterruptedException e) {
+                return;
+            }
+            reconnectDelay = Math.min(reconnectDelay * 2, MAX_RECONNECT_DELAY_MS);
+        }
+    }
+}
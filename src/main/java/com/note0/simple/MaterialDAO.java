@@ -1,70 +1,246 @@
 package com.note0.simple;
 
+import java.sql.Array;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class MaterialDAO {
 
-    public List<Material> getMaterials(String titleFilter, String subjectFilter) throws SQLException {
+    private static final String MATERIAL_COLUMNS =
+        "SELECT m.id, m.title, m.file_path, m.average_rating, u.full_name, s.name AS subject_name ";
+
+    private static final String MATERIAL_JOINS =
+        "FROM materials m " +
+        "JOIN users u ON m.uploader_id = u.id " +
+        "JOIN subjects s ON m.subject_id = s.id ";
+
+    // One row mapper per distinct SQL string, built from the first result set of that query
+    private static final Map<String, MaterialRowMapper> rowMappers = new ConcurrentHashMap<>();
+
+    private static final MaterialQueryCache queryCache = MaterialQueryCache.getInstance();
+    private static final MaterialCatalogSnapshot catalogSnapshot = MaterialCatalogSnapshot.getInstance();
+
+    /**
+     * Gets one page of approved materials, newest first, using keyset pagination on the id.
+     * Unlike OFFSET paging, the cost of a page does not grow with how far the user has scrolled.
+     * @param titleFilter Optional title filter
+     * @param subjectFilter Optional subject name, or "All Subjects"
+     * @param cursor The token from the previous page, or null for the first page
+     * @param pageSize The maximum number of materials to return
+     * @return The page, with a continuation token if more materials follow
+     * @throws SQLException if a database error occurs
+     */
+    public MaterialPage getMaterialsPage(String titleFilter, String subjectFilter, String cursor, int pageSize) throws SQLException {
+        if (catalogSnapshot.isEnabled()) {
+            return catalogSnapshot.getPage(titleFilter, subjectFilter, cursor, pageSize);
+        }
+        return queryCache.getOrLoad("materialsPage", () -> loadMaterialsPage(titleFilter, subjectFilter, cursor, pageSize),
+                titleFilter, subjectFilter, cursor, pageSize);
+    }
+
+    private MaterialPage loadMaterialsPage(String titleFilter, String subjectFilter, String cursor, int pageSize) throws SQLException {
+        StringBuilder sql = new StringBuilder(MATERIAL_COLUMNS + MATERIAL_JOINS + "WHERE " + approvedOnly());
+
+        List<Object> params = new ArrayList<>();
+        appendBrowseFilters(sql, params, titleFilter, subjectFilter);
+
+        if (cursor != null) {
+            sql.append(" AND m.id < ?");
+            params.add(parseIdCursor(cursor));
+        }
+
+        // Fetch one extra row to find out whether another page exists
+        sql.append(" ORDER BY m.id DESC LIMIT ?");
+        params.add(pageSize + 1);
+
+        List<Material> materials = queryMaterials(sql.toString(), params);
+
+        String nextCursor = null;
+        if (materials.size() > pageSize) {
+            materials.remove(materials.size() - 1);
+            nextCursor = Long.toString(materials.get(materials.size() - 1).getId());
+        }
+        return new MaterialPage(materials, nextCursor);
+    }
+
+    /**
+     * Searches approved materials by title, best matches first, one page at a time.
+     * Whole words are matched through the full-text index on title_tsv, while substrings and
+     * misspellings are matched through the trigram index on title.
+     * The cursor holds the relevance and id of the last result, so the next page continues
+     * below it in (relevance, id) order, the same keyset paging as getMaterialsPage.
+     * With the catalog snapshot enabled, the title is matched in memory as by getMaterialsPage instead.
+     * @param query The text typed by the user
+     * @param subjectFilter Optional subject name, or "All Subjects"
+     * @param cursor The token from the previous page, or null for the first page
+     * @param pageSize The maximum number of materials to return
+     * @return Matching materials ordered by relevance, with a continuation token if more follow
+     * @throws SQLException if a database error occurs
+     */
+    public MaterialPage searchMaterialsPage(String query, String subjectFilter, String cursor, int pageSize) throws SQLException {
+        String term = query == null ? "" : query.trim();
+        if (term.isEmpty()) {
+            return getMaterialsPage(null, subjectFilter, cursor, pageSize);
+        }
+        if (catalogSnapshot.isEnabled() || !SchemaCapabilities.get().hasTitleSearch()) {
+            // Filtered in memory by the snapshot, or the search migration has not been applied;
+            // either way a plain substring match, newest first
+            return getMaterialsPage(term, subjectFilter, cursor, pageSize);
+        }
+
         StringBuilder sql = new StringBuilder(
-            "SELECT m.id, m.title, m.file_path, m.average_rating, u.full_name, s.name AS subject_name " +
-            "FROM materials m " +
-            "JOIN users u ON m.uploader_id = u.id " +
-            "JOIN subjects s ON m.subject_id = s.id " +
-            "WHERE m.approval_status = 'APPROVED'"
+            "SELECT * FROM (" +
+            "SELECT m.id, m.title, m.file_path, m.average_rating, u.full_name, s.name AS subject_name, " +
+            "       ts_rank(m.title_tsv, websearch_to_tsquery('english', ?)) + word_similarity(?, m.title) AS relevance " +
+            MATERIAL_JOINS +
+            "WHERE " + approvedOnly() + " " +
+            "AND (m.title_tsv @@ websearch_to_tsquery('english', ?) OR m.title ILIKE ? OR ? <% m.title)"
         );
-        
+
         List<Object> params = new ArrayList<>();
-        boolean hasWhere = true;
+        params.add(term);
+        params.add(term);
+        params.add(term);
+        params.add("%" + escapeLikePattern(term) + "%");
+        params.add(term);
 
+        if (subjectFilter != null && !subjectFilter.isBlank() && !subjectFilter.equals("All Subjects")) {
+            sql.append(" AND s.name = ?");
+            params.add(subjectFilter);
+        }
+        sql.append(") r");
+
+        if (cursor != null) {
+            int colon = cursor.indexOf(':');
+            try {
+                float relevance = Float.parseFloat(cursor.substring(0, colon));
+                long id = Long.parseLong(cursor.substring(colon + 1));
+                sql.append(" WHERE r.relevance < ? OR (r.relevance = ? AND r.id < ?)");
+                params.add(relevance);
+                params.add(relevance);
+                params.add(id);
+            } catch (RuntimeException e) {
+                throw new SQLException("Invalid search cursor: " + cursor, e);
+            }
+        }
+
+        // Fetch one extra row to find out whether another page exists
+        sql.append(" ORDER BY r.relevance DESC, r.id DESC LIMIT ?");
+        params.add(pageSize + 1);
+
+        List<Float> relevances = new ArrayList<>();
+        List<Material> materials = queryMaterials(sql.toString(), params, relevances);
+
+        String nextCursor = null;
+        if (materials.size() > pageSize) {
+            materials.remove(materials.size() - 1);
+            // relevance is a real, so Float.toString gives back exactly the value the database compares
+            nextCursor = relevances.get(pageSize - 1) + ":" + materials.get(pageSize - 1).getId();
+        }
+        return new MaterialPage(materials, nextCursor);
+    }
+
+    private void appendBrowseFilters(StringBuilder sql, List<Object> params, String titleFilter, String subjectFilter) {
         if (titleFilter != null && !titleFilter.isBlank()) {
-            sql.append(" AND LOWER(m.title) LIKE ?");
-            params.add("%" + titleFilter.toLowerCase() + "%");
+            // ILIKE on the raw column can use the trigram index, LOWER(title) LIKE could not
+            sql.append(" AND m.title ILIKE ?");
+            params.add("%" + escapeLikePattern(titleFilter.trim()) + "%");
         }
-        
+
         if (subjectFilter != null && !subjectFilter.isBlank() && !subjectFilter.equals("All Subjects")) {
             sql.append(" AND s.name = ?");
             params.add(subjectFilter);
         }
+    }
+
+    private static String escapeLikePattern(String text) {
+        return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
 
-        sql.append(" ORDER BY m.id DESC");
-        
+    private long parseIdCursor(String cursor) throws SQLException {
+        try {
+            return Long.parseLong(cursor);
+        } catch (NumberFormatException e) {
+            throw new SQLException("Invalid page cursor: " + cursor, e);
+        }
+    }
+
+    /**
+     * @return The WHERE condition for approved materials, or TRUE on schemas without approval_status.
+     */
+    private static String approvedOnly() {
+        return SchemaCapabilities.get().hasApprovalStatus() ? "m.approval_status = 'APPROVED'" : "TRUE";
+    }
+
+    /**
+     * @return The approval_status select item, or a constant on schemas without the column.
+     */
+    private static String approvalStatusColumn() {
+        return SchemaCapabilities.get().hasApprovalStatus() ? "m.approval_status" : "'APPROVED' AS approval_status";
+    }
+
+    /**
+     * Runs a material query and maps every row with the shared mapper for that SQL string.
+     */
+    private List<Material> queryMaterials(String sql, List<Object> params) throws SQLException {
+        return queryMaterials(sql, params, null);
+    }
+
+    /**
+     * @param relevances If not null, receives the relevance column of every row, in order
+     */
+    private List<Material> queryMaterials(String sql, List<Object> params, List<Float> relevances) throws SQLException {
         List<Material> materials = new ArrayList<>();
         try (Connection conn = DatabaseManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
-            
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
             for (int i = 0; i < params.size(); i++) {
                 pstmt.setObject(i + 1, params.get(i));
             }
-            
+
+            // Lets a superseded search or page load stop this query on the server
+            QueryCanceller.register(pstmt);
             try (ResultSet rs = pstmt.executeQuery()) {
+                MaterialRowMapper mapper = rowMappers.get(sql);
+                if (mapper == null) {
+                    mapper = MaterialRowMapper.forResultSet(rs);
+                    rowMappers.put(sql, mapper);
+                }
                 while (rs.next()) {
-                    Material material = new Material();
-                    material.setId(rs.getLong("id"));
-                    material.setTitle(rs.getString("title"));
-                    material.setFilePath(rs.getString("file_path"));
-                    material.setUploaderName(rs.getString("full_name"));
-                    material.setSubjectName(rs.getString("subject_name"));
-                    material.setAverageRating(rs.getDouble("average_rating"));
-                    try {
-                        material.setApprovalStatus(rs.getString("approval_status"));
-                    } catch (SQLException e) {
-                        // If approval_status column doesn't exist, set to APPROVED
-                        material.setApprovalStatus("APPROVED");
+                    materials.add(mapper.map(rs));
+                    if (relevances != null) {
+                        relevances.add(rs.getFloat("relevance"));
                     }
-                    materials.add(material);
                 }
+            } finally {
+                QueryCanceller.unregister(pstmt);
             }
         }
         return materials;
     }
 
     public void addMaterial(String title, String filePath, long subjectId, long uploaderId) throws SQLException {
-        String sql = "INSERT INTO materials (title, file_path, subject_id, uploader_id, approval_status) VALUES (?, ?, ?, ?, ?)";
+        addMaterial(title, filePath, subjectId, uploaderId, null);
+    }
+
+    /**
+     * Adds a pending material.
+     * @param contentHash SHA-256 of the file as 64 hex digits, or null if unknown; ignored on databases without the column
+     * @throws SQLException if a database error occurs
+     */
+    public void addMaterial(String title, String filePath, long subjectId, long uploaderId, String contentHash) throws SQLException {
+        boolean withHash = contentHash != null && SchemaCapabilities.get().hasContentHash();
+        String sql = withHash
+                ? "INSERT INTO materials (title, file_path, subject_id, uploader_id, approval_status, content_hash) VALUES (?, ?, ?, ?, ?, ?)"
+                : "INSERT INTO materials (title, file_path, subject_id, uploader_id, approval_status) VALUES (?, ?, ?, ?, ?)";
         try (Connection conn = DatabaseManager.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, title);
@@ -72,7 +248,63 @@ public class MaterialDAO {
             pstmt.setLong(3, subjectId);
             pstmt.setLong(4, uploaderId);
             pstmt.setString(5, "PENDING");
+            if (withHash) {
+                pstmt.setString(6, contentHash);
+            }
             pstmt.executeUpdate();
+        } finally {
+            queryCache.invalidateAll();
+        }
+    }
+
+    /**
+     * Looks up a file that was already uploaded with the same content. Approved materials are
+     * preferred, and only files the given backend can deliver are returned, e.g. never a path
+     * stored by another client's local backend when uploading to Cloudinary.
+     * @param contentHash SHA-256 of the file as 64 hex digits
+     * @param storageService The backend the new material is stored with
+     * @return The stored file URL, or null if no usable material has this hash (or the database has no hashes)
+     * @throws SQLException if a database error occurs
+     */
+    public String findFilePathByContentHash(String contentHash, StorageService storageService) throws SQLException {
+        if (!SchemaCapabilities.get().hasContentHash()) {
+            return null;
+        }
+        String sql = "SELECT m.file_path FROM materials m WHERE m.content_hash = ? " +
+                     "ORDER BY (" + approvedOnly() + ") DESC, m.id";
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, contentHash);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    String filePath = rs.getString(1);
+                    if (storageService.canServe(filePath)) {
+                        return filePath;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Checks whether a user already added a material with this file and title, e.g. before
+     * repeating an insert whose outcome is unknown because the client stopped halfway.
+     * The uploader and title are compared too because identical files share one stored URL.
+     * @param filePath The stored file URL
+     * @return true if such a material exists, approved or not
+     * @throws SQLException if a database error occurs
+     */
+    public boolean hasMaterialWithFilePath(String filePath, long uploaderId, String title) throws SQLException {
+        String sql = "SELECT 1 FROM materials WHERE file_path = ? AND uploader_id = ? AND title = ? LIMIT 1";
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, filePath);
+            pstmt.setLong(2, uploaderId);
+            pstmt.setString(3, title);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next();
+            }
         }
     }
 
@@ -82,160 +314,92 @@ public class MaterialDAO {
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setLong(1, materialId);
             pstmt.executeUpdate();
+        } finally {
+            queryCache.invalidateAll();
         }
     }
-    
+
     /**
-     * Deletes a material from the database only (keeps the file in Cloudinary).
+     * Deletes a material from the database only (keeps the stored file).
      * @param materialId The ID of the material to delete
-     * @param cloudinaryService The CloudinaryService instance (not used, kept for compatibility)
+     * @param storageService The storage backend (not used: identical uploads share one stored file)
      * @return true if database deletion was successful
      */
-    public boolean deleteMaterialWithFile(long materialId, CloudinaryService cloudinaryService) throws SQLException {
-        // Delete from database only - keep the file in Cloudinary
+    public boolean deleteMaterialWithFile(long materialId, StorageService storageService) throws SQLException {
+        // Delete from database only - keep the stored file
         deleteMaterial(materialId);
         return true;
     }
 
     public Material getMaterialById(long id) throws SQLException {
-        String sql = "SELECT m.id, m.title, m.file_path, m.average_rating, m.approval_status, u.full_name, s.name AS subject_name " +
-                     "FROM materials m " +
-                     "JOIN users u ON m.uploader_id = u.id " +
-                     "JOIN subjects s ON m.subject_id = s.id " +
+        String sql = "SELECT m.id, m.title, m.file_path, m.average_rating, " + approvalStatusColumn() + ", u.full_name, s.name AS subject_name " +
+                     MATERIAL_JOINS +
                      "WHERE m.id = ?";
-        Material material = null;
-        try (Connection conn = DatabaseManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setLong(1, id);
-            try (ResultSet rs = pstmt.executeQuery()) {
-                if (rs.next()) {
-                    material = new Material();
-                    material.setId(rs.getLong("id"));
-                    material.setTitle(rs.getString("title"));
-                    material.setFilePath(rs.getString("file_path"));
-                    material.setUploaderName(rs.getString("full_name"));
-                    material.setSubjectName(rs.getString("subject_name"));
-                    material.setAverageRating(rs.getDouble("average_rating"));
-                    try {
-                        material.setApprovalStatus(rs.getString("approval_status"));
-                    } catch (SQLException e) {
-                        // If approval_status column doesn't exist, set to APPROVED
-                        material.setApprovalStatus("APPROVED");
-                    }
-                }
-            }
-        }
-        return material;
+        List<Material> materials = queryMaterials(sql, Collections.singletonList(id));
+        return materials.isEmpty() ? null : materials.get(0);
     }
 
-    public List<Material> getRecentMaterials(int limit) throws SQLException {
-        String sql = "SELECT m.id, m.title, m.file_path, m.average_rating, u.full_name, s.name AS subject_name " +
-                     "FROM materials m " +
-                     "JOIN users u ON m.uploader_id = u.id " +
-                     "JOIN subjects s ON m.subject_id = s.id " +
-                     "WHERE m.approval_status = 'APPROVED' " +
-                     "ORDER BY m.id DESC " +
-                     "LIMIT ?";
-        
-        List<Material> materials = new ArrayList<>();
-        try (Connection conn = DatabaseManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            
-            pstmt.setInt(1, limit);
-            
-            try (ResultSet rs = pstmt.executeQuery()) {
-                while (rs.next()) {
-                    Material material = new Material();
-                    material.setId(rs.getLong("id"));
-                    material.setTitle(rs.getString("title"));
-                    material.setFilePath(rs.getString("file_path"));
-                    material.setUploaderName(rs.getString("full_name"));
-                    material.setSubjectName(rs.getString("subject_name"));
-                    material.setAverageRating(rs.getDouble("average_rating"));
-                    try {
-                        material.setApprovalStatus(rs.getString("approval_status"));
-                    } catch (SQLException e) {
-                        // If approval_status column doesn't exist, set to APPROVED
-                        material.setApprovalStatus("APPROVED");
-                    }
-                    materials.add(material);
-                }
-            }
-        }
-        return materials;
+    /**
+     * Pages through approved materials, newest first, for the Recent feed.
+     * Shares its pages (and cache entries) with the unfiltered Browse list.
+     * @param cursor The cursor from the previous page, or null for the first page
+     */
+    public MaterialPage getRecentMaterialsPage(String cursor, int pageSize) throws SQLException {
+        return getMaterialsPage(null, "All Subjects", cursor, pageSize);
     }
-    
-    public List<Material> getTopRatedMaterials(int limit) throws SQLException {
-        String sql = "SELECT m.id, m.title, m.file_path, m.average_rating, u.full_name, s.name AS subject_name " +
-                     "FROM materials m " +
-                     "JOIN users u ON m.uploader_id = u.id " +
-                     "JOIN subjects s ON m.subject_id = s.id " +
-                     "WHERE m.average_rating > 0 AND m.approval_status = 'APPROVED' " +
-                     "ORDER BY m.average_rating DESC, m.id DESC " +
-                     "LIMIT ?";
-        
-        List<Material> materials = new ArrayList<>();
-        try (Connection conn = DatabaseManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            
-            pstmt.setInt(1, limit);
-            
-            try (ResultSet rs = pstmt.executeQuery()) {
-                while (rs.next()) {
-                    Material material = new Material();
-                    material.setId(rs.getLong("id"));
-                    material.setTitle(rs.getString("title"));
-                    material.setFilePath(rs.getString("file_path"));
-                    material.setUploaderName(rs.getString("full_name"));
-                    material.setSubjectName(rs.getString("subject_name"));
-                    material.setAverageRating(rs.getDouble("average_rating"));
-                    try {
-                        material.setApprovalStatus(rs.getString("approval_status"));
-                    } catch (SQLException e) {
-                        // If approval_status column doesn't exist, set to APPROVED
-                        material.setApprovalStatus("APPROVED");
-                    }
-                    materials.add(material);
-                }
+
+    /**
+     * Pages through rated, approved materials, best rated first, for the Popular feeds.
+     * Uses keyset pagination on (average_rating, id), which idx_materials_rating_id serves directly.
+     * @param cursor The cursor from the previous page, or null for the first page
+     */
+    public MaterialPage getTopRatedMaterialsPage(String cursor, int pageSize) throws SQLException {
+        return queryCache.getOrLoad("topRatedPage", () -> loadTopRatedMaterialsPage(cursor, pageSize), cursor, pageSize);
+    }
+
+    private MaterialPage loadTopRatedMaterialsPage(String cursor, int pageSize) throws SQLException {
+        StringBuilder sql = new StringBuilder(MATERIAL_COLUMNS + MATERIAL_JOINS +
+                "WHERE m.average_rating > 0 AND " + approvedOnly());
+        List<Object> params = new ArrayList<>();
+
+        if (cursor != null) {
+            // The cursor is "<average_rating>:<id>" of the last row of the previous page
+            int separator = cursor.lastIndexOf(':');
+            try {
+                params.add(Double.parseDouble(cursor.substring(0, separator)));
+                params.add(Long.parseLong(cursor.substring(separator + 1)));
+            } catch (RuntimeException e) {
+                throw new SQLException("Invalid page cursor: " + cursor, e);
             }
+            sql.append(" AND (m.average_rating, m.id) < (?, ?)");
         }
-        return materials;
+
+        // Fetch one extra row to find out whether another page exists
+        sql.append(" ORDER BY m.average_rating DESC, m.id DESC LIMIT ?");
+        params.add(pageSize + 1);
+
+        List<Material> materials = queryMaterials(sql.toString(), params);
+
+        String nextCursor = null;
+        if (materials.size() > pageSize) {
+            materials.remove(materials.size() - 1);
+            Material last = materials.get(materials.size() - 1);
+            nextCursor = last.getAverageRating() + ":" + last.getId();
+        }
+        return new MaterialPage(materials, nextCursor);
     }
-    
+
     public List<Material> getPendingMaterials() throws SQLException {
+        if (!SchemaCapabilities.get().hasApprovalStatus()) {
+            return new ArrayList<>(); // Without the column, nothing can be pending
+        }
         String sql = "SELECT m.id, m.title, m.file_path, m.average_rating, m.approval_status, u.full_name, s.name AS subject_name " +
-                     "FROM materials m " +
-                     "JOIN users u ON m.uploader_id = u.id " +
-                     "JOIN subjects s ON m.subject_id = s.id " +
+                     MATERIAL_JOINS +
                      "WHERE m.approval_status = 'PENDING' " +
                      "ORDER BY m.id DESC";
-        
-        List<Material> materials = new ArrayList<>();
-        try (Connection conn = DatabaseManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            
-            try (ResultSet rs = pstmt.executeQuery()) {
-                while (rs.next()) {
-                    Material material = new Material();
-                    material.setId(rs.getLong("id"));
-                    material.setTitle(rs.getString("title"));
-                    material.setFilePath(rs.getString("file_path"));
-                    material.setUploaderName(rs.getString("full_name"));
-                    material.setSubjectName(rs.getString("subject_name"));
-                    material.setAverageRating(rs.getDouble("average_rating"));
-                    try {
-                        material.setApprovalStatus(rs.getString("approval_status"));
-                    } catch (SQLException e) {
-                        // If approval_status column doesn't exist, set to APPROVED
-                        material.setApprovalStatus("APPROVED");
-                    }
-                    materials.add(material);
-                }
-            }
-        }
-        return materials;
+        return queryMaterials(sql, Collections.emptyList());
     }
-    
+
     public void updateApprovalStatus(long materialId, String status) throws SQLException {
         String sql = "UPDATE materials SET approval_status = ? WHERE id = ?";
         try (Connection conn = DatabaseManager.getConnection();
@@ -243,105 +407,169 @@ public class MaterialDAO {
             pstmt.setString(1, status);
             pstmt.setLong(2, materialId);
             pstmt.executeUpdate();
+        } finally {
+            queryCache.invalidateAll();
         }
     }
-    
-    public List<Material> getAllMaterialsForAdmin() throws SQLException {
-        String sql = "SELECT m.id, m.title, m.file_path, m.average_rating, m.approval_status, u.full_name, s.name AS subject_name " +
-                     "FROM materials m " +
-                     "JOIN users u ON m.uploader_id = u.id " +
-                     "JOIN subjects s ON m.subject_id = s.id " +
-                     "ORDER BY m.id DESC";
-        
-        List<Material> materials = new ArrayList<>();
-        try (Connection conn = DatabaseManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            
-            try (ResultSet rs = pstmt.executeQuery()) {
-                while (rs.next()) {
-                    Material material = new Material();
-                    material.setId(rs.getLong("id"));
-                    material.setTitle(rs.getString("title"));
-                    material.setFilePath(rs.getString("file_path"));
-                    material.setUploaderName(rs.getString("full_name"));
-                    material.setSubjectName(rs.getString("subject_name"));
-                    material.setAverageRating(rs.getDouble("average_rating"));
-                    try {
-                        material.setApprovalStatus(rs.getString("approval_status"));
-                    } catch (SQLException e) {
-                        // If approval_status column doesn't exist, set to APPROVED
-                        material.setApprovalStatus("APPROVED");
+
+    /**
+     * Sets the approval status of many materials with a single UPDATE.
+     * @param materialIds The IDs of the materials to update
+     * @param status The new status, e.g. "APPROVED" or "REJECTED"
+     * @return The IDs that were actually updated (materials deleted in the meantime are missing)
+     * @throws SQLException if a database error occurs; no material is updated in that case
+     */
+    public List<Long> updateApprovalStatus(Collection<Long> materialIds, String status) throws SQLException {
+        String sql = "UPDATE materials SET approval_status = ? WHERE id = ANY(?) RETURNING id";
+        return executeForIds(sql, materialIds, status);
+    }
+
+    /**
+     * Deletes many materials with a single DELETE (keeps the stored files).
+     * @param materialIds The IDs of the materials to delete
+     * @return The IDs that were actually deleted
+     * @throws SQLException if a database error occurs; no material is deleted in that case
+     */
+    public List<Long> deleteMaterials(Collection<Long> materialIds) throws SQLException {
+        String sql = "DELETE FROM materials WHERE id = ANY(?) RETURNING id";
+        return executeForIds(sql, materialIds, null);
+    }
+
+    /**
+     * Runs an UPDATE/DELETE ... WHERE id = ANY(?) RETURNING id statement in one transaction.
+     * @param status Bound as the first parameter when not null
+     */
+    private List<Long> executeForIds(String sql, Collection<Long> materialIds, String status) throws SQLException {
+        List<Long> affected = new ArrayList<>();
+        if (materialIds.isEmpty()) {
+            return affected;
+        }
+        try (Connection conn = DatabaseManager.getConnection()) {
+            conn.setAutoCommit(false);
+            Array ids = conn.createArrayOf("bigint", materialIds.toArray());
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                int index = 1;
+                if (status != null) {
+                    pstmt.setString(index++, status);
+                }
+                pstmt.setArray(index, ids);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        affected.add(rs.getLong(1));
                     }
-                    materials.add(material);
                 }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                ids.free();
+                conn.setAutoCommit(true);
             }
+        } finally {
+            queryCache.invalidateAll();
         }
-        return materials;
+        return affected;
     }
-    
+
+    public List<Material> getAllMaterialsForAdmin() throws SQLException {
+        String sql = "SELECT m.id, m.title, m.file_path, m.average_rating, " + approvalStatusColumn() + ", u.full_name, s.name AS subject_name " +
+                     MATERIAL_JOINS +
+                     "ORDER BY m.id DESC";
+        return queryMaterials(sql, Collections.emptyList());
+    }
+
     /**
      * Adds or updates a rating for a material by a user.
+     * The rating upsert and the material's running totals are updated in one statement,
+     * so the average is adjusted incrementally instead of being recomputed from all ratings.
      * @param materialId The ID of the material being rated
      * @param userId The ID of the user giving the rating
      * @param rating The rating score (1-5)
+     * @return The material's new average rating
      * @throws SQLException if a database error occurs
      */
-    public void addOrUpdateRating(long materialId, long userId, int rating) throws SQLException {
-        // First, check if user has already rated this material
-        String checkSql = "SELECT id FROM ratings WHERE material_id = ? AND user_id = ?";
-        boolean hasRated = false;
+    public double addOrUpdateRating(long materialId, long userId, int rating) throws SQLException {
+        if (!SchemaCapabilities.get().hasRatingTotals()) {
+            try {
+                return addOrUpdateRatingWithoutTotals(materialId, userId, rating);
+            } finally {
+                queryCache.invalidateAll();
+            }
+        }
+        // On conflict, previous_score captures the score being replaced so the sum can be
+        // corrected and the count left alone. It is NULL for a first-time rating.
+        String sql = "WITH upserted AS (" +
+                     "    INSERT INTO ratings (material_id, user_id, score) VALUES (?, ?, ?) " +
+                     "    ON CONFLICT (material_id, user_id) DO UPDATE " +
+                     "    SET previous_score = ratings.score, score = EXCLUDED.score " +
+                     "    RETURNING score, previous_score" +
+                     ") " +
+                     "UPDATE materials m SET " +
+                     "    rating_sum = m.rating_sum + u.score - COALESCE(u.previous_score, 0), " +
+                     "    rating_count = m.rating_count + CASE WHEN u.previous_score IS NULL THEN 1 ELSE 0 END, " +
+                     "    average_rating = (m.rating_sum + u.score - COALESCE(u.previous_score, 0))::double precision " +
+                     "        / (m.rating_count + CASE WHEN u.previous_score IS NULL THEN 1 ELSE 0 END) " +
+                     "FROM upserted u " +
+                     "WHERE m.id = ? " +
+                     "RETURNING m.average_rating";
         try (Connection conn = DatabaseManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(checkSql)) {
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setLong(1, materialId);
             pstmt.setLong(2, userId);
+            pstmt.setInt(3, rating);
+            pstmt.setLong(4, materialId);
             try (ResultSet rs = pstmt.executeQuery()) {
-                hasRated = rs.next();
+                if (!rs.next()) {
+                    throw new SQLException("Material " + materialId + " does not exist");
+                }
+                return rs.getDouble(1);
             }
+        } finally {
+            // Don't wait for the notification to round-trip before the new average shows up
+            queryCache.invalidateAll();
         }
-        
-        if (hasRated) {
-            // Update existing rating
-            String updateSql = "UPDATE ratings SET score = ? WHERE material_id = ? AND user_id = ?";
-            try (Connection conn = DatabaseManager.getConnection();
-                 PreparedStatement pstmt = conn.prepareStatement(updateSql)) {
+    }
+
+    /**
+     * Rates a material on a database without the running totals (before migration V2),
+     * recomputing the average from all of its ratings.
+     */
+    private double addOrUpdateRatingWithoutTotals(long materialId, long userId, int rating) throws SQLException {
+        String updateSql = "UPDATE ratings SET score = ? WHERE material_id = ? AND user_id = ?";
+        String insertSql = "INSERT INTO ratings (material_id, user_id, score) VALUES (?, ?, ?)";
+        String averageSql = "UPDATE materials SET average_rating = " +
+                            "(SELECT COALESCE(AVG(score), 0) FROM ratings WHERE material_id = ?) " +
+                            "WHERE id = ? RETURNING average_rating";
+        try (Connection conn = DatabaseManager.getConnection()) {
+            int updated;
+            try (PreparedStatement pstmt = conn.prepareStatement(updateSql)) {
                 pstmt.setInt(1, rating);
                 pstmt.setLong(2, materialId);
                 pstmt.setLong(3, userId);
-                pstmt.executeUpdate();
+                updated = pstmt.executeUpdate();
             }
-        } else {
-            // Insert new rating
-            String insertSql = "INSERT INTO ratings (material_id, user_id, score) VALUES (?, ?, ?)";
-            try (Connection conn = DatabaseManager.getConnection();
-                 PreparedStatement pstmt = conn.prepareStatement(insertSql)) {
+            if (updated == 0) {
+                try (PreparedStatement pstmt = conn.prepareStatement(insertSql)) {
+                    pstmt.setLong(1, materialId);
+                    pstmt.setLong(2, userId);
+                    pstmt.setInt(3, rating);
+                    pstmt.executeUpdate();
+                }
+            }
+            try (PreparedStatement pstmt = conn.prepareStatement(averageSql)) {
                 pstmt.setLong(1, materialId);
-                pstmt.setLong(2, userId);
-                pstmt.setInt(3, rating);
-                pstmt.executeUpdate();
+                pstmt.setLong(2, materialId);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    if (!rs.next()) {
+                        throw new SQLException("Material " + materialId + " does not exist");
+                    }
+                    return rs.getDouble(1);
+                }
             }
         }
-        
-        // Update the average rating for the material
-        updateAverageRating(materialId);
-    }
-    
-    /**
-     * Updates the average rating for a material based on all its ratings.
-     * @param materialId The ID of the material
-     * @throws SQLException if a database error occurs
-     */
-    private void updateAverageRating(long materialId) throws SQLException {
-        String sql = "UPDATE materials SET average_rating = " +
-                     "(SELECT COALESCE(AVG(score), 0) FROM ratings WHERE material_id = ?) " +
-                     "WHERE id = ?";
-        try (Connection conn = DatabaseManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setLong(1, materialId);
-            pstmt.setLong(2, materialId);
-            pstmt.executeUpdate();
-        }
     }
-    
+
     /**
      * Gets the rating given by a specific user for a material.
      * @param materialId The ID of the material
@@ -363,7 +591,7 @@ public class MaterialDAO {
         }
         return 0; // No rating found
     }
-    
+
     /**
      * Gets materials uploaded by a specific user.
      * @param userId The ID of the user
@@ -371,38 +599,10 @@ public class MaterialDAO {
      * @throws SQLException if a database error occurs
      */
     public List<Material> getMaterialsByUser(long userId) throws SQLException {
-        String sql = "SELECT m.id, m.title, m.file_path, m.average_rating, m.approval_status, u.full_name, s.name AS subject_name " +
-                     "FROM materials m " +
-                     "JOIN users u ON m.uploader_id = u.id " +
-                     "JOIN subjects s ON m.subject_id = s.id " +
+        String sql = "SELECT m.id, m.title, m.file_path, m.average_rating, " + approvalStatusColumn() + ", u.full_name, s.name AS subject_name " +
+                     MATERIAL_JOINS +
                      "WHERE m.uploader_id = ? " +
                      "ORDER BY m.id DESC";
-        
-        List<Material> materials = new ArrayList<>();
-        try (Connection conn = DatabaseManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            
-            pstmt.setLong(1, userId);
-            
-            try (ResultSet rs = pstmt.executeQuery()) {
-                while (rs.next()) {
-                    Material material = new Material();
-                    material.setId(rs.getLong("id"));
-                    material.setTitle(rs.getString("title"));
-                    material.setFilePath(rs.getString("file_path"));
-                    material.setUploaderName(rs.getString("full_name"));
-                    material.setSubjectName(rs.getString("subject_name"));
-                    material.setAverageRating(rs.getDouble("average_rating"));
-                    try {
-                        material.setApprovalStatus(rs.getString("approval_status"));
-                    } catch (SQLException e) {
-                        // If approval_status column doesn't exist, set to APPROVED
-                        material.setApprovalStatus("APPROVED");
-                    }
-                    materials.add(material);
-                }
-            }
-        }
-        return materials;
+        return queryMaterials(sql, Collections.singletonList(userId));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,54 @@
+package com.note0.simple;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Tells every open view about changes to a material, so that views can update the
+ * affected rows in place instead of querying their whole list again.
+ *
+ * Listeners are held weakly: a table or list model registers itself and is dropped
+ * automatically once its panel is gone. A listener must therefore be kept reachable
+ * by whoever registered it; a lambda passed directly would be collected right away.
+ * All methods must be called on the event dispatch thread.
+ */
+public final class MaterialEvents {
+
+    /**
+     * Receives rating changes.
+     */
+    @FunctionalInterface
+    public interface RatingListener {
+        /**
+         * @param material The rated material, as shown by the view that rated it
+         * @param averageRating The material's new average rating
+         */
+        void ratingChanged(Material material, double averageRating);
+    }
+
+    private static final Set<RatingListener> ratingListeners = Collections.newSetFromMap(new WeakHashMap<>());
+
+    private MaterialEvents() {
+    }
+
+    public static void addRatingListener(RatingListener listener) {
+        ratingListeners.add(listener);
+    }
+
+    public static void removeRatingListener(RatingListener listener) {
+        ratingListeners.remove(listener);
+    }
+
+    /**
+     * Announces a saved rating, e.g. with the average returned by MaterialDAO.addOrUpdateRating.
+     */
+    public static void fireRatingChanged(Material material, double averageRating) {
+        material.setAverageRating(averageRating);
+        // Copy first: a listener may register or drop listeners while handling the event
+        for (RatingListener listener : new ArrayList<>(ratingListeners)) {
+            listener.ratingChanged(material, averageRating);
+        }
+    }
+}
@@ -0,0 +1,435 @@
+package com.note0.simple;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps downloaded material files in ~/.note0/cache so that opening a material a second time
+ * reads it from disk instead of downloading it again.
+ *
+ * Files are keyed by material id and URL, so a material whose file is replaced gets a new entry.
+ * The least recently opened files are deleted once the cache grows past -Dnote0.cache.maxBytes
+ * (default 500 MB). A cached file is used without any network access for -Dnote0.cache.revalidateMs
+ * (default 24 h) after it was last checked; after that it is revalidated with If-None-Match, which
+ * costs one request but no download while the file is unchanged. An interrupted download is kept
+ * as a .part file and continued with a Range request when the same material is opened again.
+ */
+public class MaterialFileCache {
+
+    private static final long MAX_BYTES = Long.getLong("note0.cache.maxBytes", 500L * 1024 * 1024);
+    private static final long REVALIDATE_MS = Long.getLong("note0.cache.revalidateMs", 24L * 60 * 60 * 1000);
+    private static final int CONNECT_TIMEOUT_MS = 15_000;
+    private static final int READ_TIMEOUT_MS = 60_000;
+    private static final String INDEX_FILE = "index.properties";
+
+    private static final MaterialFileCache INSTANCE = new MaterialFileCache(AppPaths.home().resolve("cache"));
+
+    /** One cached file, as recorded in the index. */
+    private static class Entry {
+        String url;
+        String etag;
+        long size;
+        long validatedAt;
+        boolean complete; // false while downloading, or after an interrupted download left a .part file
+    }
+
+    private final Path directory;
+    // Least recently opened first; guarded by this
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    // Removed together with the entry, so the map does not grow with every material ever opened
+    private final Map<String, ReentrantLock> downloadLocks = new ConcurrentHashMap<>();
+    private boolean loaded;
+
+    public static MaterialFileCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param directory Where the cached files and their index are kept
+     */
+    public MaterialFileCache(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Returns a local copy of the material's file, downloading it first if it is not cached yet.
+     * Blocks for the download, so call it from a background thread (see AsyncDAO).
+     * Materials stored as local paths are returned as they are.
+     * @return The local file, ready to be opened
+     * @throws IOException if the file cannot be downloaded or written
+     */
+    public Path fetch(Material material) throws IOException {
+        String url = material.getFilePath();
+        if (url == null || url.isBlank()) {
+            throw new FileNotFoundException("Material has no file");
+        }
+        if (!url.startsWith("http://") && !url.startsWith("https://")) {
+            Path local = Path.of(url);
+            if (!Files.isRegularFile(local)) {
+                throw new FileNotFoundException("File not found at path: " + url);
+            }
+            return local;
+        }
+
+        String name = entryName(material.getId(), url);
+        // Two clicks on the same material share one download; different materials download in parallel
+        ReentrantLock lock = lockFor(name);
+        try {
+            Path file = directory.resolve(name);
+            Entry entry = lookup(name);
+            boolean cached = entry != null && entry.complete && Files.exists(file) && Files.size(file) == entry.size;
+            if (cached && System.currentTimeMillis() - entry.validatedAt < REVALIDATE_MS) {
+                touch(name, entry);
+                return file;
+            }
+            try {
+                // A complete entry whose file was damaged is downloaded from scratch
+                download(name, url, cached || entry != null && !entry.complete ? entry : null);
+            } catch (IOException e) {
+                if (!cached) {
+                    throw e;
+                }
+                // Offline: the cached copy is better than nothing
+                System.err.println("MaterialFileCache: Could not revalidate " + name + ", using cached copy: " + e.getMessage());
+            }
+            return file;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Deletes every cached file, except those being downloaded right now.
+     */
+    public synchronized void clear() {
+        ensureLoaded();
+        entries.keySet().removeIf(this::removeIfIdle);
+        saveIndex();
+    }
+
+    /**
+     * Locks the entry's download lock, retrying if the entry was evicted while waiting for it.
+     */
+    private ReentrantLock lockFor(String name) {
+        while (true) {
+            ReentrantLock lock = downloadLocks.computeIfAbsent(name, k -> new ReentrantLock());
+            lock.lock();
+            if (downloadLocks.get(name) == lock) {
+                return lock;
+            }
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Deletes the entry's files and forgets its download lock, unless a download holds the lock.
+     * Must be called while holding this object's lock; the caller removes the index entry.
+     * @return false if the entry is in use and was left alone
+     */
+    private boolean removeIfIdle(String name) {
+        ReentrantLock lock = downloadLocks.get(name);
+        if (lock != null && !lock.tryLock()) {
+            return false;
+        }
+        try {
+            deleteFiles(name);
+            downloadLocks.remove(name);
+            return true;
+        } finally {
+            if (lock != null) {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Downloads the file into name.part and moves it into place once complete.
+     * @param previous The current entry: a complete one is revalidated with If-None-Match,
+     *                 a partial one is continued with a Range request
+     */
+    private void download(String name, String url, Entry previous) throws IOException {
+        Files.createDirectories(directory);
+        Path file = directory.resolve(name);
+        Path part = directory.resolve(name + ".part");
+        // A partial download can only be continued if its ETag shows which version of the file it holds
+        long resumeFrom = previous != null && !previous.complete && previous.etag != null && Files.exists(part) ? Files.size(part) : 0;
+
+        HttpURLConnection conn = connect(url);
+        try {
+            if (resumeFrom > 0) {
+                // If-Range makes the server send the whole file instead if it changed since the partial download
+                conn.setRequestProperty("Range", "bytes=" + resumeFrom + "-");
+                conn.setRequestProperty("If-Range", previous.etag);
+            } else if (previous != null && previous.complete && previous.etag != null && Files.exists(file)) {
+                conn.setRequestProperty("If-None-Match", previous.etag);
+            }
+            int status = conn.getResponseCode();
+            if (status == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                touch(name, previous);
+                return;
+            }
+            if (status != HttpURLConnection.HTTP_OK && status != HttpURLConnection.HTTP_PARTIAL) {
+                throw new IOException("Download failed with HTTP " + status + " for " + url);
+            }
+            boolean append = status == HttpURLConnection.HTTP_PARTIAL;
+            if (append) {
+                if (resumeFrom == 0) {
+                    throw new IOException("Unexpected partial response for " + url);
+                }
+                long start = rangeStart(conn.getHeaderField("Content-Range"));
+                if (start != resumeFrom) {
+                    // Appending any other range would corrupt the file
+                    System.out.println("MaterialFileCache: Server sent bytes from " + start + " instead of "
+                            + resumeFrom + " for " + name + ", downloading it again");
+                    conn.disconnect();
+                    Files.deleteIfExists(part);
+                    download(name, url, null);
+                    return;
+                }
+                System.out.println("MaterialFileCache: Resuming download of " + name + " at byte " + resumeFrom);
+            }
+
+            Entry entry = new Entry();
+            entry.url = url;
+            entry.etag = conn.getHeaderField("ETag");
+            if (previous == null || !previous.complete) {
+                // Recorded so the download can be resumed; a verified copy keeps its entry until the new one is complete
+                record(name, entry);
+            }
+
+            try (InputStream in = conn.getInputStream();
+                 ReadableByteChannel source = Channels.newChannel(in);
+                 FileChannel target = FileChannel.open(part, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                         append ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+                while (source.read(buffer) != -1) {
+                    buffer.flip();
+                    while (buffer.hasRemaining()) {
+                        target.write(buffer);
+                    }
+                    buffer.clear();
+                }
+                target.force(false);
+            }
+
+            Files.move(part, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            entry.size = Files.size(file);
+            entry.complete = true;
+            entry.validatedAt = System.currentTimeMillis();
+            record(name, entry);
+            evict(name);
+        } catch (IOException e) {
+            synchronized (this) {
+                Entry entry = entries.get(name);
+                if (entry == null || entry.complete || entry.etag == null) {
+                    // Nothing to resume from; start over next time. A verified copy is kept.
+                    deletePart(name);
+                    if (entry != null && !entry.complete) {
+                        entries.remove(name);
+                        saveIndex();
+                    }
+                }
+            }
+            throw e;
+        } finally {
+            conn.disconnect();
+        }
+    }
+
+    /**
+     * @return The first byte of a Content-Range header such as "bytes 1000-1999/2000", or -1 if it cannot be read.
+     */
+    private static long rangeStart(String contentRange) {
+        if (contentRange == null || !contentRange.startsWith("bytes ")) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(contentRange.substring(6, contentRange.indexOf('-')).trim());
+        } catch (RuntimeException e) {
+            return -1;
+        }
+    }
+
+    private static HttpURLConnection connect(String url) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+        conn.setConnectTimeout(CONNECT_TIMEOUT_MS);
+        conn.setReadTimeout(READ_TIMEOUT_MS);
+        conn.setInstanceFollowRedirects(true);
+        return conn;
+    }
+
+    private synchronized Entry lookup(String name) {
+        ensureLoaded();
+        Entry entry = entries.get(name);
+        if (entry != null && entry.complete && !Files.exists(directory.resolve(name))) {
+            // Deleted behind our back
+            entries.remove(name);
+            return null;
+        }
+        return entry;
+    }
+
+    private synchronized void touch(String name, Entry entry) {
+        entry.validatedAt = System.currentTimeMillis();
+        entries.put(name, entry); // Also moves it to the most recently used end
+        saveIndex();
+    }
+
+    private synchronized void record(String name, Entry entry) {
+        entries.put(name, entry);
+        saveIndex();
+    }
+
+    /**
+     * Deletes the least recently opened files until the cache fits in MAX_BYTES again.
+     * @param keep The file just downloaded, which is never evicted
+     */
+    private synchronized void evict(String keep) {
+        long total = 0;
+        for (Entry entry : entries.values()) {
+            total += entry.size;
+        }
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (total > MAX_BYTES && it.hasNext()) {
+            Map.Entry<String, Entry> eldest = it.next();
+            if (eldest.getKey().equals(keep) || !eldest.getValue().complete) {
+                continue; // Partial files may still be downloading
+            }
+            if (!removeIfIdle(eldest.getKey())) {
+                continue;
+            }
+            total -= eldest.getValue().size;
+            it.remove();
+        }
+        saveIndex();
+    }
+
+    private void deleteFiles(String name) {
+        try {
+            Files.deleteIfExists(directory.resolve(name));
+        } catch (IOException e) {
+            System.err.println("MaterialFileCache: Could not delete " + name + ": " + e.getMessage());
+        }
+        deletePart(name);
+    }
+
+    private void deletePart(String name) {
+        try {
+            Files.deleteIfExists(directory.resolve(name + ".part"));
+        } catch (IOException e) {
+            System.err.println("MaterialFileCache: Could not delete " + name + ".part: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Reads the index written by an earlier session, oldest access first.
+     * Must be called while holding this object's lock.
+     */
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        Path indexFile = directory.resolve(INDEX_FILE);
+        if (!Files.exists(indexFile)) {
+            return;
+        }
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(indexFile)) {
+            properties.load(in);
+        } catch (IOException e) {
+            System.err.println("MaterialFileCache: Could not read the cache index, starting empty: " + e.getMessage());
+            return;
+        }
+        String[] order = properties.getProperty("order", "").split(",");
+        for (String name : order) {
+            String url = properties.getProperty(name + ".url");
+            if (name.isEmpty() || url == null) {
+                continue;
+            }
+            Entry entry = new Entry();
+            entry.url = url;
+            entry.etag = properties.getProperty(name + ".etag");
+            entry.size = Long.parseLong(properties.getProperty(name + ".size", "0"));
+            entry.validatedAt = Long.parseLong(properties.getProperty(name + ".validatedAt", "0"));
+            entry.complete = Boolean.parseBoolean(properties.getProperty(name + ".complete"));
+            entries.put(name, entry);
+        }
+    }
+
+    /**
+     * Writes the index, replacing it atomically. Must be called while holding this object's lock.
+     */
+    private void saveIndex() {
+        Properties properties = new Properties();
+        List<String> order = new ArrayList<>();
+        for (Map.Entry<String, Entry> e : entries.entrySet()) {
+            String name = e.getKey();
+            Entry entry = e.getValue();
+            order.add(name);
+            properties.setProperty(name + ".url", entry.url);
+            properties.setProperty(name + ".size", Long.toString(entry.size));
+            properties.setProperty(name + ".validatedAt", Long.toString(entry.validatedAt));
+            properties.setProperty(name + ".complete", Boolean.toString(entry.complete));
+            if (entry.etag != null) {
+                properties.setProperty(name + ".etag", entry.etag);
+            }
+        }
+        properties.setProperty("order", String.join(",", order));
+        try {
+            Files.createDirectories(directory);
+            Path tmp = directory.resolve(INDEX_FILE + ".tmp");
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                properties.store(out, "Note0 material file cache");
+            }
+            Files.move(tmp, directory.resolve(INDEX_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("MaterialFileCache: Could not save the cache index: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return A file name made of the material id, a hash of the URL and the URL's extension,
+     *         so the desktop picks the right application when the file is opened.
+     */
+    private static String entryName(long materialId, String url) {
+        String path = url;
+        int query = path.indexOf('?');
+        if (query >= 0) {
+            path = path.substring(0, query);
+        }
+        String lastSegment = path.substring(path.lastIndexOf('/') + 1);
+        int dot = lastSegment.lastIndexOf('.');
+        String extension = dot >= 0 && lastSegment.length() - dot <= 6 ? lastSegment.substring(dot).toLowerCase() : "";
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(url.getBytes(StandardCharsets.UTF_8));
+            return materialId + "-" + HexFormat.of().formatHex(hash, 0, 8) + extension;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
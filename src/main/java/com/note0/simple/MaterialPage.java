@@ -0,0 +1,27 @@
+package com.note0.simple;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One page of materials plus the continuation token for fetching the page after it.
+ * The token is opaque to callers; they only hand it back to the DAO.
+ */
+public class MaterialPage {
+    private final List<Material> materials;
+    private final String nextCursor;
+
+    public MaterialPage(List<Material> materials, String nextCursor) {
+        this.materials = Collections.unmodifiableList(materials);
+        this.nextCursor = nextCursor;
+    }
+
+    public List<Material> getMaterials() { return materials; }
+
+    /**
+     * @return The token for the next page, or null if this is the last page.
+     */
+    public String getNextCursor() { return nextCursor; }
+
+    public boolean hasMore() { return nextCursor != null; }
+}
@@ -0,0 +1,138 @@
+package com.note0.simple;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded LRU cache of material listing results, keyed by query name and parameters.
+ *
+ * Entries are only served while MaterialChangeListener is connected, because the cache
+ * relies on its LISTEN/NOTIFY messages to learn about changes made by other clients.
+ * While the listener is down every lookup goes straight to the database.
+ * Size is set with -Dnote0.materials.cacheSize (0 disables the cache).
+ */
+public class MaterialQueryCache {
+
+    @FunctionalInterface
+    public interface Loader<T> {
+        T load() throws SQLException;
+    }
+
+    private static final MaterialQueryCache INSTANCE = new MaterialQueryCache(Integer.getInteger("note0.materials.cacheSize", 64));
+
+    private final int maxEntries;
+    private final Map<List<Object>, Object> entries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+    // Bumped on every invalidation so a result loaded before a change is not stored after it
+    private long generation;
+    private boolean live;
+
+    MaterialQueryCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<List<Object>, Object> eldest) {
+                return size() > MaterialQueryCache.this.maxEntries;
+            }
+        };
+    }
+
+    public static MaterialQueryCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the cached result for the query, or runs the loader and caches its result.
+     * @param query A name identifying the query
+     * @param params The query parameters; together with the name they form the cache key
+     * @param loader Runs the query on a miss
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T getOrLoad(String query, List<Object> params, Loader<T> loader) throws SQLException {
+        List<Object> key = new ArrayList<>(params.size() + 1);
+        key.add(query);
+        key.addAll(params);
+
+        boolean cacheable;
+        long loadGeneration;
+        synchronized (this) {
+            cacheable = live && maxEntries > 0;
+            if (cacheable) {
+                Object cached = entries.get(key);
+                if (cached != null) {
+                    hits.incrementAndGet();
+                    return (T) cached;
+                }
+                misses.incrementAndGet();
+            }
+            loadGeneration = generation;
+        }
+
+        // Never query while holding the lock, or one slow listing would hold up every other
+        // lookup and the listener's invalidations
+        T result = loader.load();
+        if (!cacheable) {
+            return result;
+        }
+        synchronized (this) {
+            if (live && loadGeneration == generation) {
+                entries.put(key, result);
+            }
+        }
+        return result;
+    }
+
+    public <T> T getOrLoad(String query, Loader<T> loader, Object... params) throws SQLException {
+        return getOrLoad(query, Arrays.asList(params), loader);
+    }
+
+    /**
+     * Drops every cached result. Called for local writes and for change notifications.
+     */
+    public synchronized void invalidateAll() {
+        generation++;
+        entries.clear();
+        invalidations.incrementAndGet();
+    }
+
+    /**
+     * Turns caching on or off. Called by the change listener as it connects and disconnects.
+     */
+    synchronized void setLive(boolean live) {
+        this.live = live;
+        invalidateAll();
+    }
+
+    public synchronized boolean isLive() {
+        return live;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getInvalidations() {
+        return invalidations.get();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    @Override
+    public String toString() {
+        return "MaterialQueryCache[live=" + isLive() + ", size=" + size() + ", hits=" + getHits()
+                + ", misses=" + getMisses() + ", invalidations=" + getInvalidations() + "]";
+    }
+}
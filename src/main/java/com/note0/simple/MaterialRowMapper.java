@@ -0,0 +1,71 @@
+package com.note0.simple;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+
+/**
+ * Maps rows of a material query to Material objects.
+ * Column positions are resolved once from the result set metadata, so mapping a row
+ * reads columns by index and never looks up labels or catches exceptions.
+ * A mapper is only valid for the projection (SELECT list) it was built from.
+ */
+class MaterialRowMapper {
+
+    private static final int ABSENT = 0;
+
+    private final int idColumn;
+    private final int titleColumn;
+    private final int filePathColumn;
+    private final int averageRatingColumn;
+    private final int uploaderNameColumn;
+    private final int subjectNameColumn;
+    private final int approvalStatusColumn;
+
+    private MaterialRowMapper(ResultSetMetaData metaData) throws SQLException {
+        int id = ABSENT, title = ABSENT, filePath = ABSENT, averageRating = ABSENT;
+        int uploaderName = ABSENT, subjectName = ABSENT, approvalStatus = ABSENT;
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            switch (metaData.getColumnLabel(i)) {
+                case "id": id = i; break;
+                case "title": title = i; break;
+                case "file_path": filePath = i; break;
+                case "average_rating": averageRating = i; break;
+                case "full_name": uploaderName = i; break;
+                case "subject_name": subjectName = i; break;
+                case "approval_status": approvalStatus = i; break;
+                default: break;
+            }
+        }
+        this.idColumn = id;
+        this.titleColumn = title;
+        this.filePathColumn = filePath;
+        this.averageRatingColumn = averageRating;
+        this.uploaderNameColumn = uploaderName;
+        this.subjectNameColumn = subjectName;
+        this.approvalStatusColumn = approvalStatus;
+    }
+
+    /**
+     * Builds a mapper for the projection of the given result set.
+     */
+    static MaterialRowMapper forResultSet(ResultSet rs) throws SQLException {
+        return new MaterialRowMapper(rs.getMetaData());
+    }
+
+    /**
+     * Maps the current row. Queries that do not select approval_status only return
+     * approved materials, so such rows are marked APPROVED.
+     */
+    Material map(ResultSet rs) throws SQLException {
+        Material material = new Material();
+        if (idColumn != ABSENT) material.setId(rs.getLong(idColumn));
+        if (titleColumn != ABSENT) material.setTitle(rs.getString(titleColumn));
+        if (filePathColumn != ABSENT) material.setFilePath(rs.getString(filePathColumn));
+        if (uploaderNameColumn != ABSENT) material.setUploaderName(rs.getString(uploaderNameColumn));
+        if (subjectNameColumn != ABSENT) material.setSubjectName(rs.getString(subjectNameColumn));
+        if (averageRatingColumn != ABSENT) material.setAverageRating(rs.getDouble(averageRatingColumn));
+        material.setApprovalStatus(approvalStatusColumn != ABSENT ? rs.getString(approvalStatusColumn) : "APPROVED");
+        return material;
+    }
+}
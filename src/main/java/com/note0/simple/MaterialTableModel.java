@@ -0,0 +1,210 @@
+package com.note0.simple;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.DefaultTableCellRenderer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Read-only table model that shows a list of materials directly.
+ * Cells hold raw values (the rating is a Double) and are formatted by the renderers
+ * installed with {@link #install(JTable)}, so nothing is formatted for rows that are never painted.
+ * Every bulk change fires a single table event, and rating changes announced through
+ * MaterialEvents repaint only the affected row.
+ *
+ * Row indexes passed to this model are model indexes; convert view rows with
+ * JTable.convertRowIndexToModel first, since tables using this model are sortable.
+ */
+public class MaterialTableModel extends AbstractTableModel implements MaterialEvents.RatingListener {
+
+    /**
+     * The columns a material table can show.
+     */
+    public enum Column {
+        ID("ID", Long.class, Material::getId),
+        TITLE("Title", String.class, Material::getTitle),
+        SUBJECT("Subject", String.class, Material::getSubjectName),
+        RATING("Rating", Double.class, Material::getAverageRating),
+        UPLOADER("Uploader", String.class, Material::getUploaderName),
+        STATUS("Status", String.class, Material::getApprovalStatus);
+
+        private final String title;
+        private final Class<?> type;
+        private final Function<Material, Object> value;
+
+        Column(String title, Class<?> type, Function<Material, Object> value) {
+            this.title = title;
+            this.type = type;
+            this.value = value;
+        }
+    }
+
+    protected final List<Material> materials = new ArrayList<>();
+    private final Column[] columns;
+
+    public MaterialTableModel(Column... columns) {
+        this.columns = columns.clone();
+        MaterialEvents.addRatingListener(this);
+    }
+
+    /**
+     * Sets up a table for this model: one-decimal ratings and click-to-sort headers.
+     */
+    public static void install(JTable table) {
+        table.setDefaultRenderer(Double.class, new RatingRenderer());
+        table.setAutoCreateRowSorter(true);
+    }
+
+    /**
+     * Shows a small thumbnail in front of each title, loaded while the row is painted.
+     * Call after {@link #install(JTable)}; the table must show the TITLE column.
+     */
+    public static void installThumbnails(JTable table) {
+        MaterialTableModel model = (MaterialTableModel) table.getModel();
+        int column = Arrays.asList(model.columns).indexOf(Column.TITLE);
+        table.getColumnModel().getColumn(table.convertColumnIndexToView(column)).setCellRenderer(new ThumbnailTitleRenderer());
+        table.setRowHeight(Math.max(table.getRowHeight(), ThumbnailService.ROW_SIZE + 4));
+    }
+
+    @Override
+    public int getRowCount() {
+        return materials.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return columns[column].title;
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return columns[column].type;
+    }
+
+    @Override
+    public boolean isCellEditable(int row, int column) {
+        return false;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        return columns[column].value.apply(materials.get(row));
+    }
+
+    public Material getMaterialAt(int row) {
+        return materials.get(row);
+    }
+
+    /**
+     * Replaces all rows.
+     */
+    public void setMaterials(List<Material> newMaterials) {
+        materials.clear();
+        materials.addAll(newMaterials);
+        fireTableDataChanged();
+    }
+
+    /**
+     * Appends rows at the end.
+     */
+    public void addMaterials(List<Material> newMaterials) {
+        if (newMaterials.isEmpty()) {
+            return;
+        }
+        int firstRow = materials.size();
+        materials.addAll(newMaterials);
+        fireTableRowsInserted(firstRow, materials.size() - 1);
+    }
+
+    public void clear() {
+        if (!materials.isEmpty()) {
+            materials.clear();
+            fireTableDataChanged();
+        }
+    }
+
+    /**
+     * Removes the rows of the given materials.
+     */
+    public void removeMaterials(Collection<Long> materialIds) {
+        Set<Long> ids = new HashSet<>(materialIds);
+        if (materials.removeIf(material -> ids.contains(material.getId()))) {
+            fireTableDataChanged();
+        }
+    }
+
+    /**
+     * Sets the approval status of the given materials and repaints their rows.
+     */
+    public void setApprovalStatus(Collection<Long> materialIds, String status) {
+        Set<Long> ids = new HashSet<>(materialIds);
+        int first = -1;
+        int last = -1;
+        for (int row = 0; row < materials.size(); row++) {
+            Material material = materials.get(row);
+            if (ids.contains(material.getId())) {
+                material.setApprovalStatus(status);
+                first = first < 0 ? row : first;
+                last = row;
+            }
+        }
+        if (first >= 0) {
+            fireTableRowsUpdated(first, last);
+        }
+    }
+
+    @Override
+    public void ratingChanged(Material material, double averageRating) {
+        for (int row = 0; row < materials.size(); row++) {
+            if (materials.get(row).getId() == material.getId()) {
+                materials.get(row).setAverageRating(averageRating);
+                fireTableRowsUpdated(row, row);
+            }
+        }
+    }
+
+    /**
+     * Shows the title next to the material's thumbnail.
+     */
+    private static class ThumbnailTitleRenderer extends DefaultTableCellRenderer {
+        private final ThumbnailService thumbnails = ThumbnailService.getInstance();
+        private Runnable repaintTable;
+
+        @Override
+        public java.awt.Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected,
+                                                                boolean hasFocus, int row, int column) {
+            super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
+            if (repaintTable == null) {
+                repaintTable = table::repaint;
+            }
+            Material material = ((MaterialTableModel) table.getModel()).getMaterialAt(table.convertRowIndexToModel(row));
+            setIcon(thumbnails.get(material, ThumbnailService.ROW_SIZE, repaintTable));
+            return this;
+        }
+    }
+
+    /**
+     * Shows ratings with one decimal, formatted only when the cell is painted.
+     */
+    private static class RatingRenderer extends DefaultTableCellRenderer {
+        RatingRenderer() {
+            setHorizontalAlignment(SwingConstants.RIGHT);
+        }
+
+        @Override
+        protected void setValue(Object value) {
+            setText(value instanceof Double ? String.format("%.1f", (Double) value) : "");
+        }
+    }
+}
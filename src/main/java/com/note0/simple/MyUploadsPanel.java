@@ -1,11 +1,8 @@
 package com.note0.simple;
 
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
 import javax.swing.table.JTableHeader;
 import java.awt.*;
-import java.sql.SQLException;
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -17,17 +14,16 @@ public class MyUploadsPanel extends JPanel {
     private final MainFrame mainFrame;
     private final User loggedInUser;
     private final MaterialDAO materialDAO;
-    private final CloudinaryService cloudinaryService;
+    private final StorageService storageService;
 
     private JTable myUploadsTable;
-    private DefaultTableModel myUploadsModel;
-    private List<Material> myMaterials = new ArrayList<>();
+    private MaterialTableModel myUploadsModel;
 
-    public MyUploadsPanel(MainFrame mainFrame, User user, MaterialDAO materialDAO, CloudinaryService cloudinaryService) {
+    public MyUploadsPanel(MainFrame mainFrame, User user, MaterialDAO materialDAO, StorageService storageService) {
         this.mainFrame = mainFrame;
         this.loggedInUser = user;
         this.materialDAO = materialDAO;
-        this.cloudinaryService = cloudinaryService;
+        this.storageService = storageService;
 
         setLayout(new BorderLayout(10, 10));
         setBackground(UITheme.APP_BACKGROUND);
@@ -40,14 +36,10 @@ public class MyUploadsPanel extends JPanel {
         add(titleLabel, BorderLayout.NORTH);
 
         // My uploads table
-        String[] columnNames = {"Title", "Subject", "Rating", "Status"};
-        myUploadsModel = new DefaultTableModel(columnNames, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
-            }
-        };
+        myUploadsModel = new MaterialTableModel(MaterialTableModel.Column.TITLE, MaterialTableModel.Column.SUBJECT,
+                MaterialTableModel.Column.RATING, MaterialTableModel.Column.STATUS);
         myUploadsTable = new JTable(myUploadsModel);
+        MaterialTableModel.install(myUploadsTable);
         myUploadsTable.setRowHeight(30);
         myUploadsTable.setFont(UITheme.BODY_FONT);
         myUploadsTable.setGridColor(UITheme.BORDER_COLOR);
@@ -84,21 +76,8 @@ public class MyUploadsPanel extends JPanel {
     }
     
     private void loadMyUploads() {
-        myUploadsModel.setRowCount(0);
-        myMaterials.clear();
-        try {
-            myMaterials = materialDAO.getMaterialsByUser(loggedInUser.getId());
-            for (Material material : myMaterials) {
-                myUploadsModel.addRow(new Object[]{
-                    material.getTitle(), 
-                    material.getSubjectName(), 
-                    String.format("%.1f", material.getAverageRating()),
-                    material.getApprovalStatus()
-                });
-            }
-        } catch (SQLException e) {
-            JOptionPane.showMessageDialog(this, "Could not load your uploads: " + e.getMessage(), "Database Error", JOptionPane.ERROR_MESSAGE);
-        }
+        AsyncDAO.onEdt(AsyncDAO.supply(() -> materialDAO.getMaterialsByUser(loggedInUser.getId())), myUploadsModel::setMaterials,
+                e -> JOptionPane.showMessageDialog(this, "Could not load your uploads: " + e.getMessage(), "Database Error", JOptionPane.ERROR_MESSAGE));
     }
     
     private void deleteMyUpload() {
@@ -108,34 +87,18 @@ public class MyUploadsPanel extends JPanel {
             return;
         }
         
-        try {
-            if (selectedRow < myMaterials.size()) {
-                Material material = myMaterials.get(selectedRow);
-                
-                JOptionPane.showMessageDialog(this, 
-                    "Are you sure you want to delete '" + material.getTitle() + "'?\n\n" +
-                    "This will remove the material from the database.\n" +
-                    "The uploaded file will remain in Cloudinary storage.", 
-                    "Confirm Deletion", JOptionPane.YES_NO_OPTION);
-                
-                // ... inside your delete method ...
-
-        // ADD THIS LINE BACK - This is what creates the 'confirm' variable
+        Material material = myUploadsModel.getMaterialAt(myUploadsTable.convertRowIndexToModel(selectedRow));
         int confirm = JOptionPane.showConfirmDialog(this, 
-            "Are you sure you want to delete '" + material.getTitle() + "'?", 
-            "Confirm Deletion", 
-            JOptionPane.YES_NO_OPTION);
+            "Are you sure you want to delete '" + material.getTitle() + "'?\n\n" +
+            "This will remove the material from the database.\n" +
+            "The uploaded file will remain in storage.", 
+            "Confirm Deletion", JOptionPane.YES_NO_OPTION);
         
-        // Now this 'if' statement will work
-        if (confirm == JOptionPane.YES_OPTION) { 
-            materialDAO.deleteMaterial(material.getId());
-            JOptionPane.showMessageDialog(this, "Upload deleted successfully!", "Success", JOptionPane.INFORMATION_MESSAGE);
-            loadMyUploads(); // Refresh the list
-        }
-// ...
-            }
-        } catch (SQLException e) {
-            JOptionPane.showMessageDialog(this, "Error deleting upload: " + e.getMessage(), "Database Error", JOptionPane.ERROR_MESSAGE);
+        if (confirm == JOptionPane.YES_OPTION) {
+            AsyncDAO.onEdt(AsyncDAO.run(() -> materialDAO.deleteMaterial(material.getId())), done -> {
+                myUploadsModel.removeMaterials(List.of(material.getId()));
+                JOptionPane.showMessageDialog(this, "Upload deleted successfully!", "Success", JOptionPane.INFORMATION_MESSAGE);
+            }, e -> JOptionPane.showMessageDialog(this, "Error deleting upload: " + e.getMessage(), "Database Error", JOptionPane.ERROR_MESSAGE));
         }
     }
 }
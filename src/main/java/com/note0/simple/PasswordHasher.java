@@ -0,0 +1,135 @@
+package com.note0.simple;
+
+import org.mindrot.jbcrypt.BCrypt;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hashes and checks passwords with BCrypt on a small dedicated pool of threads,
+ * so that the deliberately slow hashing never competes with the UI or the DAO threads.
+ *
+ * The work factor comes from -Dnote0.bcrypt.cost if set. Otherwise it is calibrated once
+ * on this host to the highest cost whose hash takes at most -Dnote0.bcrypt.targetMillis
+ * (default 250 ms), but never below the library default of 10.
+ */
+public final class PasswordHasher {
+
+    private static final int MIN_COST = 10;
+    private static final int MAX_COST = 16;
+    private static final Integer CONFIGURED_COST = Integer.getInteger("note0.bcrypt.cost");
+    private static final int TARGET_MILLIS = Integer.getInteger("note0.bcrypt.targetMillis", 250);
+
+    private static final ThreadPoolExecutor executor = createExecutor();
+
+    private static volatile int targetCost; // 0 until calibrated
+
+    private PasswordHasher() {
+    }
+
+    /**
+     * Hashes a password with the target cost.
+     * @return A future completed with the BCrypt hash
+     */
+    public static CompletableFuture<String> hash(String password) {
+        return CompletableFuture.supplyAsync(() -> BCrypt.hashpw(password, BCrypt.gensalt(getTargetCost())), executor);
+    }
+
+    /**
+     * Checks a password against a stored hash.
+     * @return A future completed with true if the password matches
+     */
+    public static CompletableFuture<Boolean> verify(String password, String storedHash) {
+        return CompletableFuture.supplyAsync(() -> BCrypt.checkpw(password, storedHash), executor);
+    }
+
+    /**
+     * @return true if the hash was made with a lower cost than the current target,
+     *         or with any other cost than an explicitly configured one.
+     */
+    public static boolean needsRehash(String storedHash) {
+        int cost = costOf(storedHash);
+        if (cost < 0) {
+            return false; // Not a hash we understand; leave it alone
+        }
+        if (CONFIGURED_COST != null) {
+            return cost != CONFIGURED_COST;
+        }
+        // Calibrating takes several hashes' time and only runs on the hasher threads,
+        // so a login that comes before it compares against the minimum cost
+        int target = targetCost != 0 ? targetCost : MIN_COST;
+        // Calibrated targets differ a little between machines, so only upgrade;
+        // otherwise users logging in from different hosts would be rehashed every time.
+        return cost < target;
+    }
+
+    /**
+     * Calibrates the cost in the background so the first registration does not pay for it.
+     */
+    public static void warmUp() {
+        executor.execute(PasswordHasher::getTargetCost);
+    }
+
+    /**
+     * Calibrates on the first call, so it must only be called on the hasher threads.
+     * @return The cost factor new hashes are made with.
+     */
+    private static int getTargetCost() {
+        int cost = targetCost;
+        if (cost == 0) {
+            cost = CONFIGURED_COST != null ? CONFIGURED_COST : calibrate();
+            targetCost = cost;
+        }
+        return cost;
+    }
+
+    /**
+     * @return The cost factor of a "$2a$NN$..." hash, or -1 if it cannot be read.
+     */
+    static int costOf(String hash) {
+        if (hash == null || hash.length() < 7 || hash.charAt(0) != '$' || hash.charAt(3) != '$' || hash.charAt(6) != '$') {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(hash.substring(4, 6));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Times one hash at the minimum cost and extrapolates, since every extra cost step doubles the work.
+     */
+    private static int calibrate() {
+        BCrypt.hashpw("warm-up", BCrypt.gensalt(4)); // Let the JIT compile the hashing code first
+        long start = System.nanoTime();
+        BCrypt.hashpw("calibration", BCrypt.gensalt(MIN_COST));
+        double millis = Math.max(1, (System.nanoTime() - start) / 1_000_000.0);
+
+        int cost = MIN_COST;
+        while (cost < MAX_COST && millis * 2 <= TARGET_MILLIS) {
+            cost++;
+            millis *= 2;
+        }
+        System.out.println("PasswordHasher: Using BCrypt cost " + cost + " (about " + Math.round(millis) + " ms per hash)");
+        return cost;
+    }
+
+    private static ThreadPoolExecutor createExecutor() {
+        int threads = Integer.getInteger("note0.bcrypt.threads", Math.max(1, Runtime.getRuntime().availableProcessors() / 4));
+        AtomicInteger counter = new AtomicInteger();
+        // Bounded queue: a burst of logins waits its turn instead of piling up unbounded work
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Integer.getInteger("note0.bcrypt.queueSize", 32)), r -> {
+                    Thread t = new Thread(r, "note0-bcrypt-" + counter.incrementAndGet());
+                    t.setDaemon(true);
+                    t.setPriority(Thread.NORM_PRIORITY - 1);
+                    return t;
+                });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+}
@@ -107,11 +107,8 @@ public class ProfilePanel extends JPanel {
         currentUser.setCollegeName(collegeNameField.getText());
         currentUser.setSemester((int) semesterSpinner.getValue());
 
-        try {
-            userDAO.updateUser(currentUser);
-            JOptionPane.showMessageDialog(this, "Profile updated successfully!", "Success", JOptionPane.INFORMATION_MESSAGE);
-        } catch (Exception e) {
-            JOptionPane.showMessageDialog(this, "Error updating profile: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-        }
+        AsyncDAO.onEdt(AsyncDAO.run(() -> userDAO.updateUser(currentUser)),
+                done -> JOptionPane.showMessageDialog(this, "Profile updated successfully!", "Success", JOptionPane.INFORMATION_MESSAGE),
+                e -> JOptionPane.showMessageDialog(this, "Error updating profile: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE));
     }
 }
@@ -0,0 +1,101 @@
+package com.note0.simple;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Lets a cancelled background task stop the SQL statement it is running.
+ *
+ * Interrupting a thread does not stop a query that is waiting on the database, so AsyncDAO
+ * binds one canceller to each task it runs. DAOs register their statement while it executes
+ * and cancelling the task's future calls Statement.cancel on it, which makes the server
+ * abandon the query and the DAO call fail right away instead of finishing unwanted work.
+ */
+final class QueryCanceller {
+
+    // SQLSTATE query_canceled, as reported by PostgreSQL for Statement.cancel
+    static final String QUERY_CANCELED = "57014";
+
+    private static final ThreadLocal<QueryCanceller> CURRENT = new ThreadLocal<>();
+
+    // Statement.cancel opens a new connection to send the cancel request, so it must not run on
+    // the thread that cancels (usually the EDT, on every keystroke in Browse) or under the lock
+    private static final ExecutorService SENDER = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "note0-query-cancel");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private Statement statement;
+    private boolean cancelled;
+
+    /**
+     * Makes this canceller the one used by DAO calls on the current thread.
+     */
+    void bind() {
+        CURRENT.set(this);
+    }
+
+    void unbind() {
+        CURRENT.remove();
+    }
+
+    /**
+     * Cancels the statement that is running, and any statement the task starts afterwards.
+     * Returns at once; the cancel request is sent in the background.
+     */
+    void cancel() {
+        Statement running;
+        synchronized (this) {
+            cancelled = true;
+            running = statement;
+        }
+        if (running != null) {
+            SENDER.execute(() -> {
+                try {
+                    // The driver ignores this if the statement has finished in the meantime
+                    running.cancel();
+                } catch (SQLException e) {
+                    // Best effort: the task's result is discarded either way
+                }
+            });
+        }
+    }
+
+    /**
+     * Registers a statement that is about to execute on the current thread.
+     * Does nothing on threads without a canceller, e.g. the migration or login code.
+     * @throws SQLException if the task was already cancelled
+     */
+    static void register(Statement statement) throws SQLException {
+        QueryCanceller canceller = CURRENT.get();
+        if (canceller != null) {
+            canceller.attach(statement);
+        }
+    }
+
+    /**
+     * Unregisters the statement before it is closed, so a late cancel cannot reach it.
+     */
+    static void unregister(Statement statement) {
+        QueryCanceller canceller = CURRENT.get();
+        if (canceller != null) {
+            canceller.detach(statement);
+        }
+    }
+
+    private synchronized void attach(Statement statement) throws SQLException {
+        if (cancelled) {
+            throw new SQLException("Query cancelled", QUERY_CANCELED);
+        }
+        this.statement = statement;
+    }
+
+    private synchronized void detach(Statement statement) {
+        if (this.statement == statement) {
+            this.statement = null;
+        }
+    }
+}
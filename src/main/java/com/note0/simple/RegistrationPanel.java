@@ -127,16 +127,16 @@ public class RegistrationPanel extends JPanel {
         user.setEmail(email);
         user.setPassword(password);
 
-        try {
-            userDAO.registerUser(user);
+        // Hashing the password and inserting the row both take a noticeable moment
+        AsyncDAO.onEdt(AsyncDAO.run(() -> userDAO.registerUser(user)), done -> {
             JOptionPane.showMessageDialog(this, "Registration Successful! You can now log in.", "Success", JOptionPane.INFORMATION_MESSAGE);
             mainFrame.showLoginPanel();
-        } catch (SQLException ex) {
-            if (ex.getSQLState().equals("23505")) {
+        }, error -> {
+            if (error instanceof SQLException && "23505".equals(((SQLException) error).getSQLState())) {
                 JOptionPane.showMessageDialog(this, "This email address is already registered.", "Registration Failed", JOptionPane.ERROR_MESSAGE);
             } else {
-                JOptionPane.showMessageDialog(this, "A database error occurred: " + ex.getMessage(), "Database Error", JOptionPane.ERROR_MESSAGE);
+                JOptionPane.showMessageDialog(this, "A database error occurred: " + error.getMessage(), "Database Error", JOptionPane.ERROR_MESSAGE);
             }
-        }
+        });
     }
 }
@@ -0,0 +1,129 @@
+package com.note0.simple;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Records which optional schema features the connected database has.
+ * Older databases may not have run every migration yet, so the DAOs check these
+ * flags instead of catching SQLExceptions for missing columns on every row.
+ * Detection runs once, on first use after the startup migration (see DatabaseMigration.awaitStartup),
+ * and again after a migration was applied.
+ */
+public class SchemaCapabilities {
+
+    private static volatile SchemaCapabilities detected;
+
+    private final boolean approvalStatus;
+    private final boolean titleSearch;
+    private final boolean updatedAt;
+    private final boolean contentHash;
+    private final boolean ratingTotals;
+
+    private SchemaCapabilities(boolean approvalStatus, boolean titleSearch, boolean updatedAt, boolean contentHash,
+                               boolean ratingTotals) {
+        this.approvalStatus = approvalStatus;
+        this.titleSearch = titleSearch;
+        this.updatedAt = updatedAt;
+        this.contentHash = contentHash;
+        this.ratingTotals = ratingTotals;
+    }
+
+    /**
+     * Returns the detected capabilities, detecting them on the first call.
+     * If the database cannot be reached, all features are assumed present and
+     * detection is retried on the next call.
+     */
+    public static SchemaCapabilities get() {
+        SchemaCapabilities capabilities = detected;
+        if (capabilities != null) {
+            return capabilities;
+        }
+        synchronized (SchemaCapabilities.class) {
+            if (detected == null) {
+                try {
+                    detected = detect();
+                } catch (SQLException e) {
+                    System.err.println("SchemaCapabilities: Detection failed, assuming current schema: " + e.getMessage());
+                    return new SchemaCapabilities(true, true, true, true, true);
+                }
+            }
+            return detected;
+        }
+    }
+
+    /**
+     * Forgets the detected capabilities, e.g. after a migration changed the schema.
+     */
+    static void reset() {
+        detected = null;
+    }
+
+    private static SchemaCapabilities detect() throws SQLException {
+        String sql = "SELECT column_name FROM information_schema.columns " +
+                     "WHERE table_schema = current_schema() AND table_name = 'materials'";
+        Set<String> columns = new HashSet<>();
+        boolean trigrams;
+        try (Connection conn = DatabaseManager.getConnection()) {
+            try (PreparedStatement pstmt = conn.prepareStatement(sql);
+                 ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    columns.add(rs.getString(1));
+                }
+            }
+            try (PreparedStatement pstmt = conn.prepareStatement("SELECT 1 FROM pg_extension WHERE extname = 'pg_trgm'");
+                 ResultSet rs = pstmt.executeQuery()) {
+                trigrams = rs.next();
+            }
+        }
+        SchemaCapabilities capabilities = new SchemaCapabilities(
+                columns.contains("approval_status"),
+                columns.contains("title_tsv") && trigrams,
+                columns.contains("updated_at"),
+                columns.contains("content_hash"),
+                columns.contains("rating_sum"));
+        System.out.println("SchemaCapabilities: approval_status=" + capabilities.approvalStatus
+                + ", title_search=" + capabilities.titleSearch + ", updated_at=" + capabilities.updatedAt
+                + ", content_hash=" + capabilities.contentHash + ", rating_totals=" + capabilities.ratingTotals);
+        return capabilities;
+    }
+
+    /**
+     * @return true if materials has the approval_status column.
+     */
+    public boolean hasApprovalStatus() {
+        return approvalStatus;
+    }
+
+    /**
+     * @return true if the full-text column and the pg_trgm extension are available for title search.
+     */
+    public boolean hasTitleSearch() {
+        return titleSearch;
+    }
+
+    /**
+     * @return true if materials has the updated_at column maintained by a trigger.
+     */
+    public boolean hasUpdatedAt() {
+        return updatedAt;
+    }
+
+    /**
+     * @return true if materials has the content_hash column used to find files that were already uploaded.
+     */
+    public boolean hasContentHash() {
+        return contentHash;
+    }
+
+    /**
+     * @return true if materials has the running rating_sum/rating_count totals and ratings the unique index for upserts.
+     */
+    public boolean hasRatingTotals() {
+        return ratingTotals;
+    }
+}
@@ -0,0 +1,68 @@
+package com.note0.simple;
+
+/**
+ * Latency figures for search-as-you-type on the Browse tab.
+ *
+ * A search is measured from the keystroke (or filter change) that started it until its
+ * first page of results is on screen, so the debounce delay is included. Searches that
+ * were replaced by a newer one before their results arrived are counted as superseded.
+ * Each search is logged when -Dnote0.search.logLatency=true.
+ */
+public class SearchStats {
+
+    private static final boolean LOG_LATENCY = Boolean.getBoolean("note0.search.logLatency");
+
+    private long completed;
+    private long superseded;
+    private long totalNanos;
+    private long maxNanos;
+    private long lastNanos;
+
+    /**
+     * Records a search whose results were shown.
+     * @param startNanos System.nanoTime() of the input change that started it
+     */
+    public synchronized void recordCompleted(String query, long startNanos) {
+        long nanos = System.nanoTime() - startNanos;
+        completed++;
+        totalNanos += nanos;
+        maxNanos = Math.max(maxNanos, nanos);
+        lastNanos = nanos;
+        if (LOG_LATENCY) {
+            System.out.println("Search '" + query + "' shown after " + nanos / 1_000_000 + " ms (" + this + ")");
+        }
+    }
+
+    /**
+     * Records a search that was still running when the input changed again.
+     */
+    public synchronized void recordSuperseded() {
+        superseded++;
+    }
+
+    public synchronized long getCompleted() {
+        return completed;
+    }
+
+    public synchronized long getSuperseded() {
+        return superseded;
+    }
+
+    public synchronized double getAverageMillis() {
+        return completed == 0 ? 0 : totalNanos / 1_000_000.0 / completed;
+    }
+
+    public synchronized long getMaxMillis() {
+        return maxNanos / 1_000_000;
+    }
+
+    public synchronized long getLastMillis() {
+        return lastNanos / 1_000_000;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%d shown, %d superseded, avg %.0f ms, max %d ms",
+                completed, superseded, getAverageMillis(), getMaxMillis());
+    }
+}
@@ -0,0 +1,89 @@
+package com.note0.simple;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Where uploaded material files are kept. The stored location returned by uploadFile is saved
+ * as the material's file_path.
+ *
+ * The backend is chosen with -Dnote0.storage: "cloudinary" (CloudinaryService, the default) or
+ * "local" (LocalStorageService, under -Dnote0.storage.dir, default ~/.note0/storage, which can
+ * be a mounted LAN share).
+ */
+public interface StorageService {
+
+    /**
+     * Stores a file.
+     * @param file The file to store
+     * @param folder The folder to store it in, or null for a default folder
+     * @param publicIdHint A stable name, so that storing again replaces the first attempt; null for a random one
+     * @param progress Told how many bytes have been stored, or null
+     * @param checkpoint Keeps the state of an interrupted transfer between calls, or null; backends that cannot resume ignore it
+     * @return The stored file's location, to be saved as file_path
+     * @throws UploadException if the backend rejected the file; see isRetryable()
+     * @throws IOException if the file cannot be read or the transfer failed
+     */
+    String uploadFile(File file, String folder, String publicIdHint, UploadProgress progress,
+                      ChunkCheckpoint checkpoint) throws IOException;
+
+    default String uploadFile(File file, String folder, String publicIdHint, UploadProgress progress) throws IOException {
+        return uploadFile(file, folder, publicIdHint, progress, null);
+    }
+
+    default String uploadFile(File file, String folder, String publicIdHint) throws IOException {
+        return uploadFile(file, folder, publicIdHint, null, null);
+    }
+
+    /**
+     * Deletes a stored file.
+     * @param fileUrl A location returned by uploadFile
+     * @return true if deletion was successful, false otherwise
+     */
+    boolean deleteFile(String fileUrl);
+
+    /**
+     * @param fileUrl A file_path saved by any backend
+     * @return true if this backend can deliver the file, so another material may reuse it
+     */
+    boolean canServe(String fileUrl);
+
+    /**
+     * Creates the backend selected by -Dnote0.storage. Only an explicit "local" selects the local
+     * backend; Cloudinary without credentials still reports them missing on upload.
+     */
+    static StorageService create() {
+        if ("local".equalsIgnoreCase(System.getProperty("note0.storage", ""))) {
+            return LocalStorageService.fromConfiguration();
+        }
+        return new CloudinaryService();
+    }
+
+    /**
+     * Computes the SHA-256 of a file, reading it in small buffers so large files are not held in memory.
+     * Used to recognise a file that was already uploaded before sending any of it.
+     * @return The hash as 64 lowercase hex digits
+     * @throws IOException if the file cannot be read
+     */
+    static String contentHash(File file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = new FileInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+}
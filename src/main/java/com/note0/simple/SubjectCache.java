@@ -0,0 +1,67 @@
+package com.note0.simple;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Process-wide read-through cache for the subject catalog.
+ * Subjects rarely change, so every panel shares one snapshot. SubjectDAO invalidates
+ * the cache after each write. An optional TTL (-Dnote0.subjects.cacheTtlSeconds)
+ * also picks up changes made by other clients; by default snapshots never expire.
+ */
+class SubjectCache {
+
+    @FunctionalInterface
+    interface Loader {
+        List<Subject> load() throws SQLException;
+    }
+
+    private static final long TTL_MS = Long.getLong("note0.subjects.cacheTtlSeconds", 0) * 1000;
+
+    private volatile SubjectCatalog catalog;
+    private volatile long loadedAt;
+    // Bumped on every invalidation so a load that raced with a write is not kept
+    private long version;
+    // Serializes loads, so concurrent callers share one query. A ReentrantLock rather than
+    // a monitor, so a virtual thread waiting on the query does not pin its carrier thread.
+    private final ReentrantLock loadLock = new ReentrantLock();
+
+    SubjectCatalog get(Loader loader) throws SQLException {
+        SubjectCatalog current = catalog;
+        if (current != null && !isExpired()) {
+            return current;
+        }
+        loadLock.lock();
+        try {
+            // Another thread may have loaded the catalog while this one waited
+            current = catalog;
+            if (current != null && !isExpired()) {
+                return current;
+            }
+            long loadVersion;
+            synchronized (this) {
+                loadVersion = version;
+            }
+            SubjectCatalog loaded = new SubjectCatalog(loader.load());
+            synchronized (this) {
+                if (loadVersion == version) {
+                    catalog = loaded;
+                    loadedAt = System.currentTimeMillis();
+                }
+            }
+            return loaded;
+        } finally {
+            loadLock.unlock();
+        }
+    }
+
+    synchronized void invalidate() {
+        version++;
+        catalog = null;
+    }
+
+    private boolean isExpired() {
+        return TTL_MS > 0 && System.currentTimeMillis() - loadedAt > TTL_MS;
+    }
+}
@@ -0,0 +1,68 @@
+package com.note0.simple;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * An immutable snapshot of all subjects with lookup indexes.
+ * Snapshots are shared between panels, so neither the snapshot nor its lists may be modified.
+ */
+public class SubjectCatalog {
+
+    private final List<Subject> subjects;
+    private final Map<String, Long> idsByName;
+    private final Map<String, List<Subject>> subjectsBySemesterAndBranch;
+    private final List<String> subjectNames;
+
+    SubjectCatalog(List<Subject> subjects) {
+        this.subjects = Collections.unmodifiableList(new ArrayList<>(subjects));
+
+        Map<String, Long> byName = new LinkedHashMap<>();
+        Map<String, List<Subject>> byGroup = new LinkedHashMap<>();
+        for (Subject subject : subjects) {
+            byName.put(subject.getName(), subject.getId());
+            byGroup.computeIfAbsent(groupKey(subject.getSemester(), subject.getBranch()), k -> new ArrayList<>()).add(subject);
+        }
+        byGroup.replaceAll((key, group) -> Collections.unmodifiableList(group));
+
+        this.idsByName = Collections.unmodifiableMap(byName);
+        this.subjectsBySemesterAndBranch = Collections.unmodifiableMap(byGroup);
+        this.subjectNames = Collections.unmodifiableList(new ArrayList<>(new TreeSet<>(byName.keySet())));
+    }
+
+    /**
+     * @return All subjects, ordered by semester, branch, and name.
+     */
+    public List<Subject> getSubjects() {
+        return subjects;
+    }
+
+    /**
+     * @return The distinct subject names in alphabetical order.
+     */
+    public List<String> getSubjectNames() {
+        return subjectNames;
+    }
+
+    /**
+     * @return The ID of the subject with the given name, or null if there is none.
+     */
+    public Long getIdByName(String name) {
+        return idsByName.get(name);
+    }
+
+    /**
+     * @return The subjects taught in the given semester and branch, possibly empty.
+     */
+    public List<Subject> getSubjects(int semester, String branch) {
+        return subjectsBySemesterAndBranch.getOrDefault(groupKey(semester, branch), Collections.emptyList());
+    }
+
+    private static String groupKey(int semester, String branch) {
+        return semester + "|" + (branch == null ? "" : branch);
+    }
+}
@@ -12,12 +12,36 @@ import java.util.List;
  */
 public class SubjectDAO {
 
+    // Shared by every SubjectDAO instance, so all panels see the same snapshot
+    private static final SubjectCache cache = new SubjectCache();
+
     /**
-     * Retrieves all subjects from the database, ordered by semester, branch, and name.
+     * Retrieves all subjects, ordered by semester, branch, and name.
+     * The list comes from the shared cache and must not be modified.
      * @return A list of all Subject objects.
      * @throws SQLException if a database error occurs.
      */
     public List<Subject> getAllSubjects() throws SQLException {
+        return getCatalog().getSubjects();
+    }
+
+    /**
+     * Returns the cached subject catalog, loading it from the database if needed.
+     * @return The current catalog snapshot.
+     * @throws SQLException if a database error occurs.
+     */
+    public SubjectCatalog getCatalog() throws SQLException {
+        return cache.get(this::loadAllSubjects);
+    }
+
+    /**
+     * Drops the cached catalog so that the next read goes to the database.
+     */
+    public void invalidateCache() {
+        cache.invalidate();
+    }
+
+    private List<Subject> loadAllSubjects() throws SQLException {
         // Updated SQL to include new columns and a more logical ordering
         String sql = "SELECT id, name, branch, semester FROM subjects ORDER BY semester, branch, name";
         List<Subject> subjects = new ArrayList<>();
@@ -53,6 +77,8 @@ public class SubjectDAO {
             pstmt.setString(2, branch);
             pstmt.setInt(3, semester);
             pstmt.executeUpdate();
+        } finally {
+            cache.invalidate();
         }
     }
 
@@ -73,6 +99,8 @@ public class SubjectDAO {
             pstmt.setInt(3, newSemester);
             pstmt.setLong(4, id);
             pstmt.executeUpdate();
+        } finally {
+            cache.invalidate();
         }
     }
 
@@ -87,6 +115,8 @@ public class SubjectDAO {
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setLong(1, id);
             pstmt.executeUpdate();
+        } finally {
+            cache.invalidate();
         }
     }
 }
\ No newline at end of file
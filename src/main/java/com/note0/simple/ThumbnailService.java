@@ -0,0 +1,432 @@
+package com.note0.simple;
+
+import javax.imageio.ImageIO;
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Makes small first-page previews of materials for feed cards and Browse rows.
+ *
+ * A thumbnail is looked up in memory, then in ~/.note0/thumbnails, and otherwise made on a
+ * background thread: files stored as Cloudinary images are fetched as a derived image of their
+ * first page, resized by Cloudinary, and PDFs stored as raw files are rendered the same way
+ * through Cloudinary's fetch delivery; other images up to -Dnote0.thumbnails.maxSourceBytes
+ * (default 5 MB) are decoded straight from their stream and scaled locally, without going
+ * through MaterialFileCache; anything else gets a tile showing its file type. Renderers ask for thumbnails only while painting, so only the
+ * cards and rows that scroll into view are loaded.
+ *
+ * Decoded images are kept in an LRU bounded by -Dnote0.thumbnails.memoryBytes (default 16 MB).
+ * The least recently used files in ~/.note0/thumbnails are deleted once it grows past
+ * -Dnote0.thumbnails.maxBytes (default 32 MB).
+ * All methods must be called on the event dispatch thread.
+ */
+public class ThumbnailService {
+
+    public static final int CARD_SIZE = 96;
+    public static final int ROW_SIZE = 32;
+
+    private static final long MEMORY_BYTES = Long.getLong("note0.thumbnails.memoryBytes", 16L * 1024 * 1024);
+    private static final long DISK_BYTES = Long.getLong("note0.thumbnails.maxBytes", 32L * 1024 * 1024);
+    private static final int THREADS = Integer.getInteger("note0.thumbnails.threads", 2);
+    private static final long MAX_SOURCE_BYTES = Long.getLong("note0.thumbnails.maxSourceBytes", 5L * 1024 * 1024);
+    private static final int CONNECT_TIMEOUT_MS = 10_000;
+    private static final int READ_TIMEOUT_MS = 20_000;
+    private static final Set<String> IMAGE_EXTENSIONS = Set.of("png", "jpg", "jpeg", "gif", "bmp");
+
+    private static final ThumbnailService INSTANCE = new ThumbnailService(AppPaths.home().resolve("thumbnails"));
+
+    private final Path directory;
+    private final ExecutorService workers;
+    // Least recently painted first
+    private final LinkedHashMap<String, ImageIcon> memory = new LinkedHashMap<>(64, 0.75f, true);
+    private long memoryBytes;
+    // Thumbnails being made, with the callbacks waiting for them
+    private final Map<String, List<Runnable>> pending = new HashMap<>();
+    private final Object diskLock = new Object();
+    private long diskBytes = -1; // Guarded by diskLock; -1 until the directory was measured
+
+    public static ThumbnailService getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param directory Where made thumbnails are kept between sessions
+     */
+    public ThumbnailService(Path directory) {
+        this.directory = directory;
+        AtomicInteger counter = new AtomicInteger();
+        // Newest requests first, so the cards on screen are not stuck behind the ones scrolled past
+        LinkedBlockingDeque<Runnable> stack = new LinkedBlockingDeque<>() {
+            @Override
+            public boolean offer(Runnable task) {
+                return offerFirst(task);
+            }
+        };
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(THREADS, THREADS, 30, TimeUnit.SECONDS, stack, r -> {
+            Thread t = new Thread(r, "note0-thumbnail-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        this.workers = executor;
+    }
+
+    /**
+     * Returns the material's thumbnail if it is ready, otherwise starts making it.
+     * @param size CARD_SIZE or ROW_SIZE; the thumbnail is a square of this many pixels
+     * @param onLoaded Run on the EDT once the thumbnail is ready, e.g. to repaint the list
+     * @return The thumbnail, or null while it is being made
+     */
+    public ImageIcon get(Material material, int size, Runnable onLoaded) {
+        String key = key(material, size);
+        ImageIcon icon = memory.get(key);
+        if (icon != null) {
+            return icon;
+        }
+        List<Runnable> waiting = pending.get(key);
+        if (waiting != null) {
+            if (!waiting.contains(onLoaded)) {
+                waiting.add(onLoaded);
+            }
+            return null;
+        }
+        waiting = new ArrayList<>();
+        waiting.add(onLoaded);
+        pending.put(key, waiting);
+        workers.execute(() -> {
+            BufferedImage image = load(material, size, key);
+            SwingUtilities.invokeLater(() -> loaded(key, image));
+        });
+        return null;
+    }
+
+    private void loaded(String key, BufferedImage image) {
+        remember(key, new ImageIcon(image), (long) image.getWidth() * image.getHeight() * 4);
+        List<Runnable> waiting = pending.remove(key);
+        if (waiting != null) {
+            waiting.forEach(Runnable::run);
+        }
+    }
+
+    private void remember(String key, ImageIcon icon, long bytes) {
+        memory.put(key, icon);
+        memoryBytes += bytes;
+        Iterator<Map.Entry<String, ImageIcon>> it = memory.entrySet().iterator();
+        while (memoryBytes > MEMORY_BYTES && it.hasNext()) {
+            ImageIcon eldest = it.next().getValue();
+            memoryBytes -= (long) eldest.getIconWidth() * eldest.getIconHeight() * 4;
+            it.remove();
+        }
+    }
+
+    /**
+     * Makes the thumbnail on a worker thread. Never fails: a file that cannot be previewed gets a type tile.
+     */
+    private BufferedImage load(Material material, int size, String key) {
+        Path file = directory.resolve(key + ".png");
+        try {
+            if (Files.exists(file)) {
+                BufferedImage cached = ImageIO.read(file.toFile());
+                if (cached != null) {
+                    touch(file);
+                    return cached;
+                }
+            }
+            BufferedImage image = render(material, size);
+            if (image != null) {
+                save(file, image);
+                return image;
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("ThumbnailService: No preview for material " + material.getId() + ": " + e.getMessage());
+        }
+        return typeTile(extensionOf(material.getFilePath()), size);
+    }
+
+    /**
+     * @return The first page or image scaled to size, or null if the file type has no preview.
+     */
+    private BufferedImage render(Material material, int size) throws IOException {
+        String url = material.getFilePath();
+        if (url == null || url.isBlank()) {
+            return null;
+        }
+        String derived = derivedUrl(url, size);
+        if (derived != null) {
+            BufferedImage image = readUrl(derived, Long.MAX_VALUE);
+            if (image != null) {
+                return scale(image, size);
+            }
+        }
+        if (!IMAGE_EXTENSIONS.contains(extensionOf(url))) {
+            return null;
+        }
+        // Scaled locally, but never by downloading whole files into the cache just because they scrolled past
+        BufferedImage image;
+        if (url.startsWith("http://") || url.startsWith("https://")) {
+            image = readUrl(url, MAX_SOURCE_BYTES);
+        } else {
+            Path local = Path.of(url);
+            if (!Files.isRegularFile(local) || Files.size(local) > MAX_SOURCE_BYTES) {
+                return null;
+            }
+            image = ImageIO.read(local.toFile());
+        }
+        return image == null ? null : scale(image, size);
+    }
+
+    /**
+     * Builds a Cloudinary URL that delivers the first page of a file as a small JPEG,
+     * e.g. .../image/upload/v1/note0/x.pdf becomes .../image/upload/c_fill,g_north,w_96,h_96,pg_1,q_auto/v1/note0/x.jpg.
+     * Raw resources cannot be transformed, so a raw PDF is fetched by its URL instead:
+     * .../raw/upload/v1/note0/x.pdf becomes .../image/fetch/c_fill,g_north,w_96,h_96,pg_1,q_auto,f_jpg/https%3A%2F%2F...
+     * @return The derived URL, or null if the file is neither a Cloudinary image nor a raw PDF on Cloudinary
+     */
+    static String derivedUrl(String url, int size) {
+        if (!url.contains("res.cloudinary.com")) {
+            return null;
+        }
+        String transformation = "c_fill,g_north,w_" + size + ",h_" + size + ",pg_1,q_auto";
+        int upload = url.indexOf("/image/upload/");
+        if (upload >= 0) {
+            int split = upload + "/image/upload/".length();
+            String path = url.substring(split);
+            int dot = path.lastIndexOf('.');
+            if (dot > path.lastIndexOf('/')) {
+                path = path.substring(0, dot);
+            }
+            return url.substring(0, split) + transformation + "/" + path + ".jpg";
+        }
+        int raw = url.indexOf("/raw/upload/");
+        if (raw >= 0 && "pdf".equals(extensionOf(url))) {
+            return url.substring(0, raw) + "/image/fetch/" + transformation + ",f_jpg/" + URLEncoder.encode(url, StandardCharsets.UTF_8);
+        }
+        return null;
+    }
+
+    /**
+     * Decodes the image at url, giving up on images larger than maxBytes.
+     * @return The image, or null if it is missing, too large or not an image
+     */
+    private static BufferedImage readUrl(String url, long maxBytes) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+        conn.setConnectTimeout(CONNECT_TIMEOUT_MS);
+        conn.setReadTimeout(READ_TIMEOUT_MS);
+        try {
+            if (conn.getResponseCode() != HttpURLConnection.HTTP_OK || conn.getContentLengthLong() > maxBytes) {
+                return null;
+            }
+            try (InputStream in = new LimitedInputStream(conn.getInputStream(), maxBytes)) {
+                return ImageIO.read(in);
+            }
+        } finally {
+            conn.disconnect();
+        }
+    }
+
+    /**
+     * Fails once more than a set number of bytes were read, for servers that send no Content-Length.
+     */
+    private static class LimitedInputStream extends FilterInputStream {
+        private long remaining;
+
+        LimitedInputStream(InputStream in, long maxBytes) {
+            super(in);
+            this.remaining = maxBytes;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count(n);
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count(skipped);
+            return skipped;
+        }
+
+        private void count(long n) throws IOException {
+            remaining -= n;
+            if (remaining < 0) {
+                throw new IOException("Image is too large for a thumbnail");
+            }
+        }
+    }
+
+    /**
+     * Scales the image to cover a size x size square, cropping the bottom or the sides.
+     */
+    private static BufferedImage scale(BufferedImage source, int size) {
+        double factor = Math.max((double) size / source.getWidth(), (double) size / source.getHeight());
+        int width = (int) Math.ceil(source.getWidth() * factor);
+        int height = (int) Math.ceil(source.getHeight() * factor);
+        BufferedImage target = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = target.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, size, size);
+            g.drawImage(source, (size - width) / 2, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        return target;
+    }
+
+    /**
+     * Draws a tile with the file type, for files without a preview.
+     */
+    private static BufferedImage typeTile(String extension, int size) {
+        BufferedImage tile = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = tile.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            g.setColor(UITheme.APP_BACKGROUND);
+            g.fillRect(0, 0, size, size);
+            g.setColor(UITheme.ACCENT_COLOR);
+            g.drawRect(0, 0, size - 1, size - 1);
+            String label = extension.isEmpty() ? "FILE" : extension.toUpperCase(Locale.ROOT);
+            g.setFont(UITheme.LABEL_FONT.deriveFont(Font.BOLD, Math.max(9f, size / 5f)));
+            FontMetrics metrics = g.getFontMetrics();
+            g.drawString(label, (size - metrics.stringWidth(label)) / 2, (size + metrics.getAscent() - metrics.getDescent()) / 2);
+        } finally {
+            g.dispose();
+        }
+        return tile;
+    }
+
+    private void save(Path file, BufferedImage image) {
+        try {
+            Files.createDirectories(directory);
+            Path tmp = directory.resolve(file.getFileName() + ".tmp");
+            ImageIO.write(image, "png", tmp.toFile());
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            trim(Files.size(file));
+        } catch (IOException e) {
+            System.err.println("ThumbnailService: Could not save thumbnail " + file.getFileName() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Marks a thumbnail as recently used, so that trim deletes the ones not painted for the longest time.
+     */
+    private static void touch(Path file) {
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            // Only changes which thumbnails are deleted first
+        }
+    }
+
+    /**
+     * Deletes the least recently used thumbnails once the directory is larger than DISK_BYTES,
+     * down to three quarters of it so the directory is not listed again after every save.
+     * @param added The size of the thumbnail just saved
+     */
+    private void trim(long added) throws IOException {
+        synchronized (diskLock) {
+            if (diskBytes >= 0) {
+                diskBytes += added;
+                if (diskBytes <= DISK_BYTES) {
+                    return;
+                }
+            }
+            Map<Path, BasicFileAttributes> files = new HashMap<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.png")) {
+                for (Path path : stream) {
+                    files.put(path, Files.readAttributes(path, BasicFileAttributes.class));
+                }
+            }
+            long total = 0;
+            for (BasicFileAttributes attributes : files.values()) {
+                total += attributes.size();
+            }
+            if (total > DISK_BYTES) {
+                List<Path> oldestFirst = new ArrayList<>(files.keySet());
+                oldestFirst.sort(Comparator.comparing(path -> files.get(path).lastModifiedTime()));
+                for (Iterator<Path> it = oldestFirst.iterator(); total > DISK_BYTES / 4 * 3 && it.hasNext(); ) {
+                    Path path = it.next();
+                    if (Files.deleteIfExists(path)) {
+                        total -= files.get(path).size();
+                    }
+                }
+            }
+            diskBytes = total;
+        }
+    }
+
+    private static String extensionOf(String url) {
+        if (url == null) {
+            return "";
+        }
+        String path = url;
+        int query = path.indexOf('?');
+        if (query >= 0) {
+            path = path.substring(0, query);
+        }
+        String lastSegment = path.substring(path.lastIndexOf('/') + 1);
+        int dot = lastSegment.lastIndexOf('.');
+        return dot >= 0 ? lastSegment.substring(dot + 1).toLowerCase(Locale.ROOT) : "";
+    }
+
+    /**
+     * @return The material id, a hash of the URL (so a replaced file gets a new thumbnail) and the size.
+     */
+    private static String key(Material material, int size) {
+        String url = material.getFilePath() == null ? "" : material.getFilePath();
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(url.getBytes(StandardCharsets.UTF_8));
+            return material.getId() + "-" + HexFormat.of().formatHex(hash, 0, 8) + "-" + size;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
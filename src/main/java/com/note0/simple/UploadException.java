@@ -0,0 +1,40 @@
+package com.note0.simple;
+
+import java.io.IOException;
+
+/**
+ * An upload the storage service answered with an error.
+ * Server errors and throttling are worth retrying; rejected requests are not.
+ */
+public class UploadException extends IOException {
+
+    private final int statusCode;
+    private final boolean retryable;
+
+    public UploadException(String message, int statusCode, boolean retryable) {
+        super(message);
+        this.statusCode = statusCode;
+        this.retryable = retryable;
+    }
+
+    /**
+     * @return The HTTP status of the failed request, or 0 if the request was never sent.
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * @return true if sending the same upload again may succeed.
+     */
+    public boolean isRetryable() {
+        return retryable;
+    }
+
+    /**
+     * @return true for HTTP statuses that signal a temporary problem: timeouts, throttling and server errors.
+     */
+    static boolean isTransientStatus(int statusCode) {
+        return statusCode == 408 || statusCode == 429 || statusCode >= 500;
+    }
+}
@@ -0,0 +1,130 @@
+package com.note0.simple;
+
+import java.io.File;
+
+/**
+ * One file in the upload queue, from the moment it is queued until its material row exists.
+ * Fields are written by the upload worker and read by the UI, so they are volatile;
+ * only UploadManager changes them.
+ */
+public class UploadJob {
+
+    public enum State {
+        QUEUED("Queued"),
+        CHECKING("Checking for duplicates"),
+        UPLOADING("Uploading"),
+        WAITING_TO_RETRY("Waiting to retry"),
+        SAVING("Saving"),
+        DONE("Done"),
+        FAILED("Failed");
+
+        private final String label;
+
+        State(String label) {
+            this.label = label;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    private final String id;
+    private final File file;
+    private final String title;
+    private final long subjectId;
+    private final long uploaderId;
+
+    private volatile State state = State.QUEUED;
+    private volatile String url;
+    private volatile int attempts;
+    private volatile long bytesSent;
+    private volatile long totalBytes;
+    private volatile String error;
+    private volatile String contentHash;
+    private volatile boolean reusedExistingFile;
+    private volatile boolean removed;
+    // Progress of a chunked upload, so a retry continues after the last acknowledged chunk
+    private volatile String chunkUploadId;
+    private volatile String chunkFingerprint;
+    private volatile long acknowledgedBytes;
+    // Not persisted: whether a worker has been given this job since it was loaded
+    volatile boolean scheduled;
+    volatile long lastProgressNanos;
+
+    UploadJob(String id, File file, String title, long subjectId, long uploaderId) {
+        this.id = id;
+        this.file = file;
+        this.title = title;
+        this.subjectId = subjectId;
+        this.uploaderId = uploaderId;
+        this.totalBytes = file.length();
+    }
+
+    public String getId() { return id; }
+    public File getFile() { return file; }
+    public String getTitle() { return title; }
+    public long getSubjectId() { return subjectId; }
+    public long getUploaderId() { return uploaderId; }
+    public State getState() { return state; }
+    public int getAttempts() { return attempts; }
+    public long getBytesSent() { return bytesSent; }
+    public long getTotalBytes() { return totalBytes; }
+    public String getError() { return error; }
+    public String getContentHash() { return contentHash; }
+    public String getChunkUploadId() { return chunkUploadId; }
+    public String getChunkFingerprint() { return chunkFingerprint; }
+    public long getAcknowledgedBytes() { return acknowledgedBytes; }
+
+    /**
+     * @return The uploaded file's URL once the upload was confirmed, otherwise null.
+     */
+    public String getUrl() { return url; }
+
+    /**
+     * @return true if an identical file was already stored, so its URL was reused and nothing was uploaded.
+     */
+    public boolean isReusedExistingFile() { return reusedExistingFile; }
+
+    /**
+     * @return true once the job was removed from the queue; listeners see this in their last event for it.
+     */
+    public boolean isRemoved() { return removed; }
+
+    /**
+     * @return Upload progress from 0 to 100.
+     */
+    public int getPercent() {
+        if (state == State.SAVING || state == State.DONE) {
+            return 100;
+        }
+        return totalBytes <= 0 ? 0 : (int) Math.min(100, bytesSent * 100 / totalBytes);
+    }
+
+    /**
+     * @return true while a worker is or will be processing the job.
+     */
+    public boolean isActive() {
+        return state != State.DONE && state != State.FAILED;
+    }
+
+    void setState(State state) { this.state = state; }
+    void setUrl(String url) { this.url = url; }
+    void setAttempts(int attempts) { this.attempts = attempts; }
+    void setError(String error) { this.error = error; }
+    void setContentHash(String contentHash) { this.contentHash = contentHash; }
+    void setReusedExistingFile(boolean reusedExistingFile) { this.reusedExistingFile = reusedExistingFile; }
+    void setRemoved(boolean removed) { this.removed = removed; }
+
+    void setChunkCheckpoint(String uploadId, String fingerprint, long acknowledgedBytes) {
+        this.chunkUploadId = uploadId;
+        this.chunkFingerprint = fingerprint;
+        this.acknowledgedBytes = acknowledgedBytes;
+    }
+
+    void setProgress(long bytesSent, long totalBytes) {
+        this.bytesSent = bytesSent;
+        this.totalBytes = totalBytes;
+    }
+}
@@ -0,0 +1,407 @@
+package com.note0.simple;
+
+import javax.swing.SwingUtilities;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Uploads material files in the background and adds their materials once the upload is confirmed.
+ *
+ * A few worker threads (-Dnote0.upload.threads, default 2) upload in parallel; the rest of the
+ * queue waits. Transient failures (network errors, throttling, server errors, database errors)
+ * are retried with exponential backoff up to -Dnote0.upload.maxAttempts times (default 5).
+ * The queue is saved to ~/.note0/uploads.properties on every state change, so uploads that were
+ * still pending when the app closed continue after the uploader logs in again. Large files are
+ * uploaded in chunks and each acknowledged chunk is saved too, so a retry or a resumed upload
+ * continues from the last acknowledged chunk rather than from the start. Before uploading, the
+ * file's SHA-256 is looked up in materials.content_hash, and an identical file that is already
+ * stored is reused without sending any bytes. Once a file is uploaded its URL is saved before
+ * the material row is inserted, so a failed insert is retried without uploading the file again.
+ */
+public class UploadManager {
+
+    /**
+     * Told about queue changes and progress, on the event dispatch thread.
+     */
+    @FunctionalInterface
+    public interface Listener {
+        void jobChanged(UploadJob job);
+    }
+
+    private static final String UPLOAD_FOLDER = "note0/materials";
+    private static final int THREADS = Integer.getInteger("note0.upload.threads", 2);
+    private static final int MAX_ATTEMPTS = Integer.getInteger("note0.upload.maxAttempts", 5);
+    private static final long RETRY_DELAY_MS = Long.getLong("note0.upload.retryDelayMs", 2_000);
+    private static final long MAX_RETRY_DELAY_MS = 60_000;
+    // Progress events are coalesced so a fast upload does not flood the EDT
+    private static final long PROGRESS_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final StorageService storageService;
+    private final MaterialDAO materialDAO;
+    private final Path queueFile;
+    private final ThreadPoolExecutor workers;
+    private final ScheduledExecutorService retryTimer;
+    private final Map<String, UploadJob> jobs = new LinkedHashMap<>(); // Guarded by this
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private volatile boolean shutDown;
+
+    public UploadManager(StorageService storageService, MaterialDAO materialDAO) {
+        this(storageService, materialDAO, AppPaths.home().resolve("uploads.properties"));
+    }
+
+    /**
+     * @param queueFile Where the queue is saved between runs
+     */
+    public UploadManager(StorageService storageService, MaterialDAO materialDAO, Path queueFile) {
+        this.storageService = storageService;
+        this.materialDAO = materialDAO;
+        this.queueFile = queueFile;
+
+        AtomicInteger counter = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(THREADS, THREADS, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread t = new Thread(r, "note0-upload-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        workers.allowCoreThreadTimeOut(true);
+        this.retryTimer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "note0-upload-retry");
+            t.setDaemon(true);
+            return t;
+        });
+        load();
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Queues a file for upload. Returns immediately; the upload runs on a worker thread.
+     * @return The queued job
+     */
+    public UploadJob enqueue(File file, String title, long subjectId, long uploaderId) {
+        UploadJob job = new UploadJob(UUID.randomUUID().toString(), file.getAbsoluteFile(), title, subjectId, uploaderId);
+        synchronized (this) {
+            jobs.put(job.getId(), job);
+            save();
+        }
+        fireChanged(job);
+        schedule(job, 0);
+        return job;
+    }
+
+    /**
+     * Restarts the uploads a user left pending in an earlier session. Safe to call on every login.
+     */
+    public void resume(long uploaderId) {
+        List<UploadJob> pending = new ArrayList<>();
+        synchronized (this) {
+            for (UploadJob job : jobs.values()) {
+                if (job.getUploaderId() == uploaderId && job.isActive() && !job.scheduled) {
+                    pending.add(job);
+                }
+            }
+        }
+        if (!pending.isEmpty()) {
+            System.out.println("UploadManager: Resuming " + pending.size() + " pending upload(s)");
+        }
+        pending.forEach(job -> schedule(job, 0));
+    }
+
+    /**
+     * Queues a failed job again with a fresh set of attempts.
+     */
+    public void retry(String jobId) {
+        UploadJob job;
+        synchronized (this) {
+            job = jobs.get(jobId);
+            if (job == null || job.getState() != UploadJob.State.FAILED) {
+                return;
+            }
+            job.setAttempts(0);
+            job.setError(null);
+            job.setState(UploadJob.State.QUEUED);
+            save();
+        }
+        fireChanged(job);
+        schedule(job, 0);
+    }
+
+    /**
+     * Removes a finished or failed job from the queue. Jobs still in progress are kept.
+     * @return true if the job was removed
+     */
+    public boolean remove(String jobId) {
+        UploadJob job;
+        synchronized (this) {
+            job = jobs.get(jobId);
+            if (job == null || job.isActive()) {
+                return false;
+            }
+            jobs.remove(jobId);
+            job.setRemoved(true);
+            save();
+        }
+        fireChanged(job);
+        return true;
+    }
+
+    /**
+     * @return The user's jobs in the order they were queued, including finished ones from this session.
+     */
+    public synchronized List<UploadJob> getJobs(long uploaderId) {
+        List<UploadJob> result = new ArrayList<>();
+        for (UploadJob job : jobs.values()) {
+            if (job.getUploaderId() == uploaderId) {
+                result.add(job);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Stops the workers without touching the queue file any more, so the jobs still pending
+     * are picked up by the next manager that reads it, as after closing the app.
+     */
+    void shutdown() {
+        shutDown = true;
+        retryTimer.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    private void schedule(UploadJob job, long delayMillis) {
+        if (shutDown) {
+            return;
+        }
+        job.scheduled = true;
+        if (delayMillis <= 0) {
+            workers.execute(() -> process(job));
+        } else {
+            retryTimer.schedule(() -> workers.execute(() -> process(job)), delayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void process(UploadJob job) {
+        try {
+            if (job.getUrl() == null && job.getContentHash() == null) {
+                setState(job, UploadJob.State.CHECKING);
+                job.setContentHash(StorageService.contentHash(job.getFile()));
+                // The same handout is often uploaded many times; reuse the stored copy instead of sending it again
+                String existing = materialDAO.findFilePathByContentHash(job.getContentHash(), storageService);
+                if (existing != null) {
+                    System.out.println("UploadManager: " + job.getFile().getName() + " is already stored, reusing " + existing);
+                    job.setReusedExistingFile(true);
+                    job.setUrl(existing);
+                }
+            }
+            if (job.getUrl() == null) {
+                setState(job, UploadJob.State.UPLOADING);
+                // The job id as public_id makes a retried upload replace the earlier attempt instead of adding a copy
+                String url = storageService.uploadFile(job.getFile(), UPLOAD_FOLDER, job.getId(),
+                        (sent, total) -> progress(job, sent, total), checkpointOf(job));
+                job.setUrl(url);
+            }
+            setState(job, UploadJob.State.SAVING); // Saves the URL before the insert
+            // After a crash between the insert and the DONE state, the row may already be there
+            if (!materialDAO.hasMaterialWithFilePath(job.getUrl(), job.getUploaderId(), job.getTitle())) {
+                materialDAO.addMaterial(job.getTitle(), job.getUrl(), job.getSubjectId(), job.getUploaderId(), job.getContentHash());
+            }
+            setState(job, UploadJob.State.DONE);
+            System.out.println("UploadManager: Uploaded " + job.getFile().getName());
+        } catch (Exception e) {
+            handleFailure(job, e);
+        }
+    }
+
+    /**
+     * @return A checkpoint that stores chunk progress in the job and saves the queue after every chunk.
+     */
+    private ChunkCheckpoint checkpointOf(UploadJob job) {
+        return new ChunkCheckpoint() {
+            @Override
+            public String getUploadId() {
+                return job.getChunkUploadId();
+            }
+
+            @Override
+            public String getFingerprint() {
+                return job.getChunkFingerprint();
+            }
+
+            @Override
+            public long getAcknowledgedBytes() {
+                return job.getAcknowledgedBytes();
+            }
+
+            @Override
+            public void acknowledged(String uploadId, String fingerprint, long bytes) {
+                synchronized (UploadManager.this) {
+                    job.setChunkCheckpoint(uploadId, fingerprint, bytes);
+                    save();
+                }
+            }
+        };
+    }
+
+    private void handleFailure(UploadJob job, Exception e) {
+        int attempts = job.getAttempts() + 1;
+        job.setAttempts(attempts);
+        job.setError(e.getMessage());
+        if (isRetryable(e) && attempts < MAX_ATTEMPTS) {
+            // Exponential backoff with jitter, so parallel uploads hitting the same outage do not retry in lockstep
+            long delay = Math.min(MAX_RETRY_DELAY_MS, RETRY_DELAY_MS << Math.min(attempts - 1, 20));
+            delay = delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+            System.err.println("UploadManager: Attempt " + attempts + " for " + job.getFile().getName()
+                    + " failed (" + e.getMessage() + "), retrying in " + delay + " ms");
+            setState(job, UploadJob.State.WAITING_TO_RETRY);
+            schedule(job, delay);
+        } else {
+            System.err.println("UploadManager: Giving up on " + job.getFile().getName() + ": " + e.getMessage());
+            job.scheduled = false;
+            setState(job, UploadJob.State.FAILED);
+        }
+    }
+
+    private static boolean isRetryable(Exception e) {
+        if (e instanceof UploadException) {
+            return ((UploadException) e).isRetryable();
+        }
+        // A missing file will not come back; other I/O and SQL errors are usually temporary
+        return !(e instanceof FileNotFoundException);
+    }
+
+    private void setState(UploadJob job, UploadJob.State state) {
+        synchronized (this) {
+            job.setState(state);
+            save();
+        }
+        fireChanged(job);
+    }
+
+    private void progress(UploadJob job, long sent, long total) {
+        job.setProgress(sent, total);
+        long now = System.nanoTime();
+        if (sent == total || now - job.lastProgressNanos >= PROGRESS_INTERVAL_NANOS) {
+            job.lastProgressNanos = now;
+            fireChanged(job);
+        }
+    }
+
+    private void fireChanged(UploadJob job) {
+        if (listeners.isEmpty()) {
+            return;
+        }
+        SwingUtilities.invokeLater(() -> listeners.forEach(listener -> listener.jobChanged(job)));
+    }
+
+    /**
+     * Writes all unfinished jobs to the queue file, replacing it atomically.
+     * Must be called while holding this object's lock.
+     */
+    private void save() {
+        if (shutDown) {
+            return;
+        }
+        Properties properties = new Properties();
+        for (UploadJob job : jobs.values()) {
+            if (job.getState() == UploadJob.State.DONE) {
+                continue;
+            }
+            String prefix = job.getId() + ".";
+            properties.setProperty(prefix + "file", job.getFile().getPath());
+            properties.setProperty(prefix + "title", job.getTitle());
+            properties.setProperty(prefix + "subjectId", Long.toString(job.getSubjectId()));
+            properties.setProperty(prefix + "uploaderId", Long.toString(job.getUploaderId()));
+            properties.setProperty(prefix + "state", job.getState().name());
+            properties.setProperty(prefix + "attempts", Integer.toString(job.getAttempts()));
+            if (job.getUrl() != null) {
+                properties.setProperty(prefix + "url", job.getUrl());
+            }
+            if (job.getError() != null) {
+                properties.setProperty(prefix + "error", job.getError());
+            }
+            if (job.getContentHash() != null) {
+                properties.setProperty(prefix + "contentHash", job.getContentHash());
+            }
+            if (job.getChunkUploadId() != null) {
+                properties.setProperty(prefix + "chunkUploadId", job.getChunkUploadId());
+                properties.setProperty(prefix + "chunkFingerprint", job.getChunkFingerprint());
+                properties.setProperty(prefix + "chunkOffset", Long.toString(job.getAcknowledgedBytes()));
+            }
+        }
+        try {
+            Files.createDirectories(queueFile.getParent());
+            Path temp = queueFile.resolveSibling(queueFile.getFileName() + ".tmp");
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                properties.store(out, "Note0 upload queue");
+            }
+            Files.move(temp, queueFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("UploadManager: Could not save the upload queue: " + e.getMessage());
+        }
+    }
+
+    private synchronized void load() {
+        if (!Files.exists(queueFile)) {
+            return;
+        }
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(queueFile)) {
+            properties.load(in);
+        } catch (IOException e) {
+            System.err.println("UploadManager: Could not read the upload queue: " + e.getMessage());
+            return;
+        }
+        for (String key : properties.stringPropertyNames()) {
+            if (!key.endsWith(".file")) {
+                continue;
+            }
+            String id = key.substring(0, key.length() - ".file".length());
+            String prefix = id + ".";
+            try {
+                UploadJob job = new UploadJob(id, new File(properties.getProperty(key)),
+                        properties.getProperty(prefix + "title", ""),
+                        Long.parseLong(properties.getProperty(prefix + "subjectId")),
+                        Long.parseLong(properties.getProperty(prefix + "uploaderId")));
+                job.setUrl(properties.getProperty(prefix + "url"));
+                job.setAttempts(Integer.parseInt(properties.getProperty(prefix + "attempts", "0")));
+                job.setError(properties.getProperty(prefix + "error"));
+                job.setContentHash(properties.getProperty(prefix + "contentHash"));
+                job.setChunkCheckpoint(properties.getProperty(prefix + "chunkUploadId"),
+                        properties.getProperty(prefix + "chunkFingerprint"),
+                        Long.parseLong(properties.getProperty(prefix + "chunkOffset", "0")));
+                UploadJob.State state = UploadJob.State.valueOf(properties.getProperty(prefix + "state", "QUEUED"));
+                // Whatever was in flight when the app closed starts over from the queue
+                job.setState(state == UploadJob.State.FAILED ? state : UploadJob.State.QUEUED);
+                jobs.put(id, job);
+            } catch (IllegalArgumentException | NullPointerException e) {
+                System.err.println("UploadManager: Skipping unreadable queue entry " + id);
+            }
+        }
+    }
+}
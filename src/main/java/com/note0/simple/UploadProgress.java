@@ -0,0 +1,15 @@
+package com.note0.simple;
+
+/**
+ * Receives the progress of a file transfer.
+ */
+@FunctionalInterface
+public interface UploadProgress {
+
+    /**
+     * Called from the transferring thread as bytes are sent.
+     * @param bytesSent The number of bytes sent so far
+     * @param totalBytes The size of the file
+     */
+    void update(long bytesSent, long totalBytes);
+}
@@ -0,0 +1,160 @@
+package com.note0.simple;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.TableCellRenderer;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Shows the logged-in user's upload queue with per-file progress, and lets them
+ * retry or remove failed uploads. Listens to the UploadManager only while it is displayed.
+ */
+public class UploadQueuePanel extends JPanel {
+
+    private final UploadManager uploadManager;
+    private final long uploaderId;
+    private final QueueTableModel tableModel = new QueueTableModel();
+    private final JTable table = new JTable(tableModel);
+    private final UploadManager.Listener listener = tableModel::jobChanged;
+
+    public UploadQueuePanel(UploadManager uploadManager, User user) {
+        super(new BorderLayout(5, 5));
+        this.uploadManager = uploadManager;
+        this.uploaderId = user.getId();
+        setBackground(UITheme.APP_BACKGROUND);
+
+        JLabel titleLabel = new JLabel("Upload Queue");
+        titleLabel.setFont(UITheme.LABEL_FONT);
+        titleLabel.setForeground(UITheme.TEXT_COLOR);
+        add(titleLabel, BorderLayout.NORTH);
+
+        table.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        table.getColumnModel().getColumn(QueueTableModel.PROGRESS_COLUMN).setCellRenderer(new ProgressRenderer());
+        table.setPreferredScrollableViewportSize(new Dimension(600, 120));
+        add(new JScrollPane(table), BorderLayout.CENTER);
+
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        buttonPanel.setBackground(UITheme.APP_BACKGROUND);
+        JButton retryButton = new JButton("Retry");
+        UITheme.styleSecondaryButton(retryButton);
+        JButton removeButton = new JButton("Remove");
+        UITheme.styleSecondaryButton(removeButton);
+        retryButton.addActionListener(e -> {
+            UploadJob job = selectedJob();
+            if (job != null) {
+                uploadManager.retry(job.getId());
+            }
+        });
+        removeButton.addActionListener(e -> {
+            UploadJob job = selectedJob();
+            if (job != null && !uploadManager.remove(job.getId())) {
+                JOptionPane.showMessageDialog(this, "Only finished or failed uploads can be removed.", "Info", JOptionPane.INFORMATION_MESSAGE);
+            }
+        });
+        buttonPanel.add(retryButton);
+        buttonPanel.add(removeButton);
+        add(buttonPanel, BorderLayout.SOUTH);
+    }
+
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        uploadManager.addListener(listener);
+        tableModel.setJobs(uploadManager.getJobs(uploaderId));
+    }
+
+    @Override
+    public void removeNotify() {
+        // A panel that is no longer displayed must not be kept alive by the manager
+        uploadManager.removeListener(listener);
+        super.removeNotify();
+    }
+
+    private UploadJob selectedJob() {
+        int row = table.getSelectedRow();
+        return row < 0 ? null : tableModel.jobs.get(table.convertRowIndexToModel(row));
+    }
+
+    private class QueueTableModel extends AbstractTableModel {
+        static final int PROGRESS_COLUMN = 3;
+        private final String[] columnNames = {"File", "Title", "Status", "Progress", "Attempts"};
+        private final List<UploadJob> jobs = new ArrayList<>();
+
+        void setJobs(List<UploadJob> newJobs) {
+            jobs.clear();
+            jobs.addAll(newJobs);
+            fireTableDataChanged();
+        }
+
+        void jobChanged(UploadJob job) {
+            if (job.getUploaderId() != uploaderId) {
+                return;
+            }
+            // The event tells all; asking the manager would wait for its lock, which is held during disk writes
+            int row = jobs.indexOf(job);
+            if (row >= 0 && job.isRemoved()) {
+                jobs.remove(row);
+                fireTableRowsDeleted(row, row);
+            } else if (row >= 0) {
+                fireTableRowsUpdated(row, row);
+            } else if (!job.isRemoved()) {
+                jobs.add(job);
+                fireTableRowsInserted(jobs.size() - 1, jobs.size() - 1);
+            }
+        }
+
+        @Override
+        public int getRowCount() {
+            return jobs.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return columnNames.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return columnNames[column];
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            UploadJob job = jobs.get(row);
+            switch (column) {
+                case 0: return job.getFile().getName();
+                case 1: return job.getTitle();
+                case 2: return statusText(job);
+                case 3: return job.getPercent();
+                case 4: return job.getAttempts();
+                default: return null;
+            }
+        }
+    }
+
+    private static String statusText(UploadJob job) {
+        if (job.getState() == UploadJob.State.FAILED && job.getError() != null) {
+            return "Failed: " + job.getError();
+        }
+        if (job.getState() == UploadJob.State.DONE && job.isReusedExistingFile()) {
+            return "Done (file was already uploaded)";
+        }
+        return job.getState().toString();
+    }
+
+    private static class ProgressRenderer extends JProgressBar implements TableCellRenderer {
+        ProgressRenderer() {
+            super(0, 100);
+            setStringPainted(true);
+        }
+
+        @Override
+        public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected,
+                                                       boolean hasFocus, int row, int column) {
+            setValue(value instanceof Integer ? (Integer) value : 0);
+            return this;
+        }
+    }
+}
@@ -1,16 +1,19 @@
 package com.note0.simple;
 
-import org.mindrot.jbcrypt.BCrypt;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
 
 public class UserDAO {
 
     public void registerUser(User user) throws SQLException {
         String sql = "INSERT INTO users (full_name, email, password_hash, role, is_active, is_verified, college_name, semester) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
-        String hashedPassword = BCrypt.hashpw(user.getPassword(), BCrypt.gensalt());
+        String hashedPassword = await(() -> PasswordHasher.hash(user.getPassword()));
 
         try (Connection conn = DatabaseManager.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
@@ -31,7 +34,9 @@ public class UserDAO {
     public User loginUser(String email, String plainPassword) throws SQLException {
         String sql = "SELECT id, full_name, password_hash, role, college_name, semester FROM users WHERE email = ?";
         User user = null;
+        String storedHash = null;
 
+        // Read the row first and give the connection back before the slow password check
         try (Connection conn = DatabaseManager.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
@@ -39,22 +44,53 @@ public class UserDAO {
 
             try (ResultSet rs = pstmt.executeQuery()) {
                 if (rs.next()) {
-                    String storedHash = rs.getString("password_hash");
-                    if (BCrypt.checkpw(plainPassword, storedHash)) {
-                        user = new User();
-                        user.setId(rs.getLong("id"));
-                        user.setFullName(rs.getString("full_name"));
-                        user.setEmail(email);
-                        user.setRole(rs.getString("role"));
-                        user.setCollegeName(rs.getString("college_name"));
-                        user.setSemester(rs.getInt("semester"));
-                    }
+                    storedHash = rs.getString("password_hash");
+                    user = new User();
+                    user.setId(rs.getLong("id"));
+                    user.setFullName(rs.getString("full_name"));
+                    user.setEmail(email);
+                    user.setRole(rs.getString("role"));
+                    user.setCollegeName(rs.getString("college_name"));
+                    user.setSemester(rs.getInt("semester"));
                 }
             }
         }
+
+        if (user == null) {
+            return null;
+        }
+        String hash = storedHash;
+        if (!await(() -> PasswordHasher.verify(plainPassword, hash))) {
+            return null;
+        }
+        if (PasswordHasher.needsRehash(storedHash)) {
+            rehashInBackground(user.getId(), plainPassword, storedHash);
+        }
         return user;
     }
 
+    /**
+     * Replaces a hash made with an outdated cost, without making the login wait for it.
+     * The update only applies if the stored hash is still the one that was checked.
+     */
+    private void rehashInBackground(long userId, String plainPassword, String oldHash) {
+        // The hash is made on the hasher threads, the UPDATE on the DAO threads
+        PasswordHasher.hash(plainPassword).thenCompose(newHash -> AsyncDAO.run(() -> {
+            String sql = "UPDATE users SET password_hash = ? WHERE id = ? AND password_hash = ?";
+            try (Connection conn = DatabaseManager.getConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setString(1, newHash);
+                pstmt.setLong(2, userId);
+                pstmt.setString(3, oldHash);
+                pstmt.executeUpdate();
+                System.out.println("UserDAO: Upgraded password hash of user " + userId + " to cost " + PasswordHasher.costOf(newHash));
+            }
+        })).exceptionally(e -> {
+            System.err.println("UserDAO: Could not upgrade password hash: " + AsyncDAO.unwrap(e).getMessage());
+            return null;
+        });
+    }
+
     public void updateUser(User user) throws SQLException {
         String sql = "UPDATE users SET full_name = ?, email = ?, college_name = ?, semester = ? WHERE id = ?";
         try (Connection conn = DatabaseManager.getConnection();
@@ -69,10 +105,19 @@ public class UserDAO {
     }
     
     public void createAdminUser() throws SQLException {
+        try (Connection conn = DatabaseManager.getConnection()) {
+            createAdminUser(conn);
+        }
+    }
+
+    /**
+     * Makes sure the admin account exists and has the ADMIN role, using the caller's connection
+     * so that DatabaseMigration can run it inside its transaction.
+     */
+    void createAdminUser(Connection conn) throws SQLException {
         // Check if admin user already exists
         String checkSql = "SELECT id FROM users WHERE email = ?";
-        try (Connection conn = DatabaseManager.getConnection();
-             PreparedStatement checkStmt = conn.prepareStatement(checkSql)) {
+        try (PreparedStatement checkStmt = conn.prepareStatement(checkSql)) {
             checkStmt.setString(1, "aswin@gmail.com");
             try (ResultSet rs = checkStmt.executeQuery()) {
                 if (rs.next()) {
@@ -89,10 +134,9 @@ public class UserDAO {
         
         // Create new admin user
         String sql = "INSERT INTO users (full_name, email, password_hash, role, is_active, is_verified, college_name, semester) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
-        String hashedPassword = BCrypt.hashpw("123", BCrypt.gensalt());
+        String hashedPassword = await(() -> PasswordHasher.hash("123"));
 
-        try (Connection conn = DatabaseManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setString(1, "Admin User");
             pstmt.setString(2, "aswin@gmail.com");
@@ -106,4 +150,20 @@ public class UserDAO {
             pstmt.executeUpdate();
         }
     }
+
+    /**
+     * Waits for work handed to the PasswordHasher, reporting failures like any other DAO failure.
+     */
+    private static <T> T await(Supplier<CompletableFuture<T>> task) throws SQLException {
+        try {
+            return task.get().get();
+        } catch (RejectedExecutionException e) {
+            throw new SQLException("Too many password checks in progress, please try again.", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while checking the password.", e);
+        } catch (ExecutionException e) {
+            throw new SQLException("Password hashing failed: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
 }
@@ -0,0 +1,13 @@
+-- Add approval_status column to materials table
+
+-- Add the approval_status column without a default first, so rows that already exist are NULL
+ALTER TABLE materials ADD COLUMN IF NOT EXISTS approval_status VARCHAR(20);
+
+-- Update existing materials to be approved (since they were already uploaded before this feature)
+UPDATE materials SET approval_status = 'APPROVED' WHERE approval_status IS NULL;
+
+-- New uploads wait for an admin
+ALTER TABLE materials ALTER COLUMN approval_status SET DEFAULT 'PENDING';
+
+-- Create index for better performance on approval status queries
+CREATE INDEX IF NOT EXISTS idx_materials_approval_status ON materials(approval_status);
@@ -0,0 +1,17 @@
+-- Running rating totals so a new rating adjusts the average incrementally
+-- instead of recomputing AVG(score) over every rating of the material
+ALTER TABLE materials ADD COLUMN IF NOT EXISTS rating_sum BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE materials ADD COLUMN IF NOT EXISTS rating_count INTEGER NOT NULL DEFAULT 0;
+ALTER TABLE ratings ADD COLUMN IF NOT EXISTS previous_score INTEGER;
+
+-- One rating per user per material (required by the ON CONFLICT upsert).
+-- Keep only the latest rating if a user managed to rate the same material twice.
+DELETE FROM ratings a USING ratings b
+WHERE a.material_id = b.material_id AND a.user_id = b.user_id AND a.id < b.id;
+CREATE UNIQUE INDEX IF NOT EXISTS idx_ratings_material_user ON ratings(material_id, user_id);
+
+-- Backfill the totals from the existing ratings
+UPDATE materials m
+SET rating_sum = r.total, rating_count = r.cnt, average_rating = r.total::double precision / r.cnt
+FROM (SELECT material_id, SUM(score) AS total, COUNT(*) AS cnt FROM ratings GROUP BY material_id) r
+WHERE m.id = r.material_id;
@@ -0,0 +1,9 @@
+-- Indexed title search: full-text for whole words, trigrams for substrings and typos.
+-- Replaces LOWER(title) LIKE '%term%', which always scanned the whole materials table.
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+ALTER TABLE materials ADD COLUMN IF NOT EXISTS title_tsv tsvector
+    GENERATED ALWAYS AS (to_tsvector('english', coalesce(title, ''))) STORED;
+
+CREATE INDEX IF NOT EXISTS idx_materials_title_tsv ON materials USING gin (title_tsv);
+CREATE INDEX IF NOT EXISTS idx_materials_title_trgm ON materials USING gin (title gin_trgm_ops);
@@ -0,0 +1,25 @@
+-- Change notifications for the client-side listing cache (MaterialChangeListener).
+-- Statement-level triggers send at most one NOTIFY per statement.
+CREATE OR REPLACE FUNCTION note0_notify_materials_changed() RETURNS trigger AS $$
+BEGIN
+    PERFORM pg_notify('note0_materials_changed', TG_TABLE_NAME);
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS materials_changed_notify ON materials;
+CREATE TRIGGER materials_changed_notify AFTER INSERT OR UPDATE OR DELETE ON materials
+    FOR EACH STATEMENT EXECUTE FUNCTION note0_notify_materials_changed();
+
+DROP TRIGGER IF EXISTS ratings_changed_notify ON ratings;
+CREATE TRIGGER ratings_changed_notify AFTER INSERT OR UPDATE OR DELETE ON ratings
+    FOR EACH STATEMENT EXECUTE FUNCTION note0_notify_materials_changed();
+
+-- Listings show subject names and uploader names
+DROP TRIGGER IF EXISTS subjects_changed_notify ON subjects;
+CREATE TRIGGER subjects_changed_notify AFTER UPDATE OR DELETE ON subjects
+    FOR EACH STATEMENT EXECUTE FUNCTION note0_notify_materials_changed();
+
+DROP TRIGGER IF EXISTS users_changed_notify ON users;
+CREATE TRIGGER users_changed_notify AFTER UPDATE OF full_name OR DELETE ON users
+    FOR EACH STATEMENT EXECUTE FUNCTION note0_notify_materials_changed();
@@ -0,0 +1,3 @@
+-- Serves the Popular feed's ORDER BY average_rating DESC, id DESC and its keyset
+-- condition (average_rating, id) < (?, ?) without sorting the whole table
+CREATE INDEX IF NOT EXISTS idx_materials_rating_id ON materials (average_rating DESC, id DESC);
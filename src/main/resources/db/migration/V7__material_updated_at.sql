@@ -0,0 +1,16 @@
+-- Lets MaterialCatalogSnapshot fetch only the materials changed since its last refresh.
+-- The trigger keeps updated_at current for every UPDATE, including rating totals and moderation.
+ALTER TABLE materials ADD COLUMN IF NOT EXISTS updated_at TIMESTAMPTZ NOT NULL DEFAULT now();
+
+CREATE OR REPLACE FUNCTION note0_touch_updated_at() RETURNS trigger AS $$
+BEGIN
+    NEW.updated_at := now();
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS materials_touch_updated_at ON materials;
+CREATE TRIGGER materials_touch_updated_at BEFORE UPDATE ON materials
+    FOR EACH ROW EXECUTE FUNCTION note0_touch_updated_at();
+
+CREATE INDEX IF NOT EXISTS idx_materials_updated_at ON materials (updated_at);
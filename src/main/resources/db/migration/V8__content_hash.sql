@@ -0,0 +1,5 @@
+-- SHA-256 of the uploaded file, so a file that is already stored is not uploaded again.
+-- Rows uploaded before this migration have no hash and are never matched.
+ALTER TABLE materials ADD COLUMN IF NOT EXISTS content_hash CHAR(64);
+
+CREATE INDEX IF NOT EXISTS idx_materials_content_hash ON materials (content_hash) WHERE content_hash IS NOT NULL;
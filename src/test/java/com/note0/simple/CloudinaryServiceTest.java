@@ -0,0 +1,142 @@
+package com.note0.simple;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs chunked uploads against CloudinaryStub, with chunks small enough to keep the tests fast.
+ */
+class CloudinaryServiceTest {
+
+    private static final int CHUNK = 64 * 1024;
+    private static final int FILE_SIZE = 3 * CHUNK + 100;
+    private static final String STORED_URL = "https://res.cloudinary.com/demo/raw/upload/v1/note0/big.pdf";
+
+    @TempDir
+    Path dir;
+
+    private CloudinaryStub stub;
+
+    @AfterEach
+    void tearDown() {
+        if (stub != null) {
+            stub.close();
+        }
+    }
+
+    @Test
+    void resumesFromTheLastAcknowledgedChunkAfterADroppedConnection() throws Exception {
+        stub = new CloudinaryStub(
+                CloudinaryStub.json(200, "{\"done\":false}"),
+                CloudinaryStub.json(200, "{\"done\":false}"),
+                CloudinaryStub.droppedAfter(1000),
+                CloudinaryStub.json(200, "{\"done\":false}"),
+                CloudinaryStub.uploaded(STORED_URL));
+        byte[] content = content();
+        File file = write("big.pdf", content);
+        CloudinaryService service = service();
+        ChunkCheckpoint checkpoint = ChunkCheckpoint.inMemory();
+
+        assertThrows(IOException.class, () -> service.uploadFile(file, "note0", "big", null, checkpoint));
+        assertEquals(2L * CHUNK, checkpoint.getAcknowledgedBytes());
+        String uploadId = checkpoint.getUploadId();
+
+        assertEquals(STORED_URL, service.uploadFile(file, "note0", "big", null, checkpoint));
+
+        List<CloudinaryStub.Request> requests = stub.requests();
+        assertEquals(5, requests.size());
+        assertEquals("bytes 0-65535/196708", requests.get(0).contentRange);
+        assertEquals("bytes 65536-131071/196708", requests.get(1).contentRange);
+        assertEquals("bytes 131072-196607/196708", requests.get(2).contentRange);
+        // The second call starts again with the chunk whose connection was dropped
+        assertEquals("bytes 131072-196607/196708", requests.get(3).contentRange);
+        assertEquals("bytes 196608-196707/196708", requests.get(4).contentRange);
+        for (CloudinaryStub.Request request : requests) {
+            assertEquals(uploadId, request.uploadId);
+            assertTrue(request.path.endsWith("/demo/raw/upload"), request.path);
+        }
+        assertContains(requests.get(3).body, Arrays.copyOfRange(content, 2 * CHUNK, 3 * CHUNK));
+        assertContains(requests.get(4).body, Arrays.copyOfRange(content, 3 * CHUNK, FILE_SIZE));
+    }
+
+    @Test
+    void restartsFromTheBeginningWhenTheFileChanged() throws Exception {
+        stub = new CloudinaryStub(
+                CloudinaryStub.json(200, "{\"done\":false}"),
+                CloudinaryStub.droppedAfter(1000),
+                CloudinaryStub.json(200, "{\"done\":false}"),
+                CloudinaryStub.json(200, "{\"done\":false}"),
+                CloudinaryStub.json(200, "{\"done\":false}"),
+                CloudinaryStub.uploaded(STORED_URL));
+        File file = write("big.pdf", content());
+        CloudinaryService service = service();
+        ChunkCheckpoint checkpoint = ChunkCheckpoint.inMemory();
+
+        assertThrows(IOException.class, () -> service.uploadFile(file, "note0", "big", null, checkpoint));
+        assertEquals(CHUNK, checkpoint.getAcknowledgedBytes());
+        String firstUploadId = checkpoint.getUploadId();
+
+        // Same size, different modification time: the acknowledged chunk may no longer match the file
+        assertTrue(file.setLastModified(file.lastModified() - 60_000));
+        assertEquals(STORED_URL, service.uploadFile(file, "note0", "big", null, checkpoint));
+
+        List<CloudinaryStub.Request> requests = stub.requests();
+        assertEquals(6, requests.size());
+        assertEquals("bytes 0-65535/196708", requests.get(2).contentRange);
+        assertEquals("bytes 196608-196707/196708", requests.get(5).contentRange);
+        for (CloudinaryStub.Request request : requests.subList(2, 6)) {
+            assertNotEquals(firstUploadId, request.uploadId);
+            assertEquals(checkpoint.getUploadId(), request.uploadId);
+        }
+    }
+
+    @Test
+    void sendsSmallFilesInOneRequest() throws Exception {
+        stub = new CloudinaryStub(CloudinaryStub.uploaded(STORED_URL));
+        File file = write("small.pdf", new byte[CHUNK]);
+
+        assertEquals(STORED_URL, service().uploadFile(file, "note0", "small"));
+
+        CloudinaryStub.Request request = stub.requests().get(0);
+        assertNull(request.contentRange);
+        assertNull(request.uploadId);
+    }
+
+    private CloudinaryService service() {
+        return new CloudinaryService(stub.cloudinaryUrl(), CHUNK, CHUNK);
+    }
+
+    private static byte[] content() {
+        byte[] content = new byte[FILE_SIZE];
+        new Random(42).nextBytes(content);
+        return content;
+    }
+
+    private File write(String name, byte[] content) throws IOException {
+        return Files.write(dir.resolve(name), content).toFile();
+    }
+
+    private static void assertContains(byte[] body, byte[] part) {
+        for (int i = 0; i + part.length <= body.length; i++) {
+            if (Arrays.equals(body, i, i + part.length, part, 0, part.length)) {
+                return;
+            }
+        }
+        throw new AssertionError("The request body does not contain the expected " + part.length + " bytes");
+    }
+}
@@ -0,0 +1,153 @@
+package com.note0.simple;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Per-query latency of "SELECT 1" with a new physical connection per query (how every DAO
+ * method worked before the pool) and with a connection borrowed from DatabaseManager's pool.
+ *
+ * Without -Dnote0.db.url the connections come from SimulatedDriver, which waits
+ * -Dnote0.bench.connectMs (default 150 ms, roughly a TLS handshake to Aiven) before handing out
+ * a connection whose queries cost nothing, so only the connection overhead is measured. To
+ * measure a real database instead:
+ * mvn test-compile exec:exec@run-benchmarks -Dbenchmark="ConnectionPool -jvmArgsAppend -Dnote0.db.url=jdbc:postgresql://..."
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConnectionPoolBenchmark {
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        if (System.getProperty("note0.db.url") == null) {
+            DriverManager.registerDriver(new SimulatedDriver());
+            // Read by DatabaseManager when it is first used below
+            System.setProperty("note0.db.url", SimulatedDriver.URL);
+        }
+        DatabaseManager.warmUp();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        DatabaseManager.shutdown();
+    }
+
+    @Benchmark
+    public int newConnectionPerQuery() throws SQLException {
+        try (Connection conn = DatabaseManager.openPhysicalConnection()) {
+            return selectOne(conn);
+        }
+    }
+
+    @Benchmark
+    public int pooledConnection() throws SQLException {
+        try (Connection conn = DatabaseManager.getConnection()) {
+            return selectOne(conn);
+        }
+    }
+
+    private static int selectOne(Connection conn) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT 1");
+             ResultSet rs = pstmt.executeQuery()) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    /**
+     * A JDBC driver whose connections take a fixed time to open and answer every query with one row holding 1.
+     */
+    static class SimulatedDriver implements Driver {
+        static final String URL = "jdbc:note0-simulated:";
+        private static final long CONNECT_MS = Long.getLong("note0.bench.connectMs", 150);
+
+        @Override
+        public Connection connect(String url, Properties info) throws SQLException {
+            if (!acceptsURL(url)) {
+                return null;
+            }
+            try {
+                Thread.sleep(CONNECT_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while connecting", e);
+            }
+            boolean[] closed = {false};
+            return JdbcStubs.stub(Connection.class, (name, args) -> {
+                switch (name) {
+                    case "close": closed[0] = true; return null;
+                    case "isClosed": return closed[0];
+                    case "isValid": case "getAutoCommit": return true;
+                    case "prepareStatement": return JdbcStubs.stub(PreparedStatement.class, (statementMethod, statementArgs) ->
+                            "executeQuery".equals(statementMethod) ? resultSet() : null);
+                    default: return null;
+                }
+            });
+        }
+
+        private static ResultSet resultSet() {
+            int[] row = {0};
+            return JdbcStubs.stub(ResultSet.class, (name, args) -> {
+                switch (name) {
+                    case "next": return ++row[0] == 1;
+                    case "getInt": return 1;
+                    default: return null;
+                }
+            });
+        }
+
+        @Override
+        public boolean acceptsURL(String url) {
+            return url != null && url.startsWith(URL);
+        }
+
+        @Override
+        public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+            return new DriverPropertyInfo[0];
+        }
+
+        @Override
+        public int getMajorVersion() {
+            return 1;
+        }
+
+        @Override
+        public int getMinorVersion() {
+            return 0;
+        }
+
+        @Override
+        public boolean jdbcCompliant() {
+            return false;
+        }
+
+        @Override
+        public Logger getParentLogger() {
+            return Logger.getGlobal();
+        }
+    }
+}
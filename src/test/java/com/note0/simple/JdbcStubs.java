@@ -0,0 +1,55 @@
+package com.note0.simple;
+
+import java.lang.reflect.Proxy;
+import java.sql.SQLException;
+
+/**
+ * Minimal JDBC objects for benchmarks that must not need a database.
+ */
+final class JdbcStubs {
+
+    /**
+     * Answers the calls made on a stub.
+     */
+    @FunctionalInterface
+    interface StubMethod {
+        /**
+         * @return The result, or null (read as false / 0 for methods returning a primitive)
+         */
+        Object invoke(String name, Object[] args) throws SQLException;
+    }
+
+    private JdbcStubs() {
+    }
+
+    /**
+     * @return A proxy of the JDBC interface whose calls are answered by method.
+     */
+    static <T> T stub(Class<T> type, StubMethod method) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, m, args) -> {
+            if (m.getDeclaringClass() == Object.class) {
+                switch (m.getName()) {
+                    case "equals": return proxy == args[0];
+                    case "hashCode": return System.identityHashCode(proxy);
+                    default: return type.getSimpleName() + "Stub";
+                }
+            }
+            Object result = method.invoke(m.getName(), args);
+            if (result == null && m.getReturnType().isPrimitive() && m.getReturnType() != void.class) {
+                return defaultValue(m.getReturnType());
+            }
+            return result;
+        }));
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) return false;
+        if (type == long.class) return 0L;
+        if (type == double.class) return 0d;
+        if (type == float.class) return 0f;
+        if (type == short.class) return (short) 0;
+        if (type == byte.class) return (byte) 0;
+        if (type == char.class) return (char) 0;
+        return 0;
+    }
+}
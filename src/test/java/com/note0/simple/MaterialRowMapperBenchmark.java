@@ -0,0 +1,123 @@
+package com.note0.simple;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-row cost of mapping the Browse/feed projection (which has no approval_status column)
+ * the way MaterialDAO used to, by column label with a caught SQLException for the missing
+ * column on every row, and with MaterialRowMapper.
+ *
+ * The result set is an in-memory stub that, like the PostgreSQL driver, looks labels up in a
+ * map and throws an SQLException for unknown ones, so the database itself is not measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MaterialRowMapperBenchmark {
+
+    private static final int ROWS = 1_000;
+    private static final List<String> COLUMNS = List.of("id", "title", "file_path", "average_rating", "full_name", "subject_name");
+
+    private final Object[][] rows = new Object[ROWS][];
+    private MaterialRowMapper mapper;
+
+    @Setup
+    public void setUp() throws SQLException {
+        for (int i = 0; i < ROWS; i++) {
+            rows[i] = new Object[]{(long) i, "Lecture notes " + i, "https://res.cloudinary.com/demo/raw/upload/v1/note0/" + i + ".pdf",
+                    i % 5 + 0.5, "Uploader " + i % 17, "Subject " + i % 9};
+        }
+        // Built once per projection and shared, as MaterialDAO does
+        mapper = MaterialRowMapper.forResultSet(resultSet());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void labelsWithCaughtException(Blackhole blackhole) throws SQLException {
+        ResultSet rs = resultSet();
+        while (rs.next()) {
+            Material material = new Material();
+            material.setId(rs.getLong("id"));
+            material.setTitle(rs.getString("title"));
+            material.setFilePath(rs.getString("file_path"));
+            material.setUploaderName(rs.getString("full_name"));
+            material.setSubjectName(rs.getString("subject_name"));
+            material.setAverageRating(rs.getDouble("average_rating"));
+            try {
+                material.setApprovalStatus(rs.getString("approval_status"));
+            } catch (SQLException e) {
+                material.setApprovalStatus("APPROVED");
+            }
+            blackhole.consume(material);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void rowMapper(Blackhole blackhole) throws SQLException {
+        ResultSet rs = resultSet();
+        while (rs.next()) {
+            blackhole.consume(mapper.map(rs));
+        }
+    }
+
+    /**
+     * @return A forward-only result set over rows, with getters by index and by label.
+     */
+    private ResultSet resultSet() {
+        Map<String, Integer> indexes = new HashMap<>();
+        for (int i = 0; i < COLUMNS.size(); i++) {
+            indexes.put(COLUMNS.get(i), i + 1);
+        }
+        ResultSetMetaData metaData = JdbcStubs.stub(ResultSetMetaData.class, (name, args) -> {
+            switch (name) {
+                case "getColumnCount": return COLUMNS.size();
+                case "getColumnLabel": case "getColumnName": return COLUMNS.get((Integer) args[0] - 1);
+                default: return null;
+            }
+        });
+        int[] row = {-1};
+        return JdbcStubs.stub(ResultSet.class, (name, args) -> {
+            switch (name) {
+                case "next": return ++row[0] < ROWS;
+                case "getMetaData": return metaData;
+                case "getLong": case "getString": case "getDouble":
+                    int column;
+                    if (args[0] instanceof Integer) {
+                        column = (Integer) args[0];
+                    } else {
+                        Integer found = indexes.get(((String) args[0]).toLowerCase(Locale.ROOT));
+                        if (found == null) {
+                            throw new SQLException("The column name " + args[0] + " was not found in this ResultSet.", "42703");
+                        }
+                        column = found;
+                    }
+                    return rows[row[0]][column - 1];
+                default: return null;
+            }
+        });
+    }
+}
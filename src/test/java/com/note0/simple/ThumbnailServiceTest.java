@@ -0,0 +1,28 @@
+package com.note0.simple;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ThumbnailServiceTest {
+
+    @Test
+    void derivesTheFirstPageOfAnImageResource() {
+        assertEquals("https://res.cloudinary.com/demo/image/upload/c_fill,g_north,w_96,h_96,pg_1,q_auto/v1/note0/x.jpg",
+                ThumbnailService.derivedUrl("https://res.cloudinary.com/demo/image/upload/v1/note0/x.pdf", 96));
+    }
+
+    @Test
+    void fetchesRawPdfsThroughCloudinary() {
+        assertEquals("https://res.cloudinary.com/demo/image/fetch/c_fill,g_north,w_32,h_32,pg_1,q_auto,f_jpg/"
+                        + "https%3A%2F%2Fres.cloudinary.com%2Fdemo%2Fraw%2Fupload%2Fv1%2Fnote0%2Fx.pdf",
+                ThumbnailService.derivedUrl("https://res.cloudinary.com/demo/raw/upload/v1/note0/x.pdf", 32));
+    }
+
+    @Test
+    void hasNoDerivedUrlForOtherFiles() {
+        assertNull(ThumbnailService.derivedUrl("https://res.cloudinary.com/demo/raw/upload/v1/note0/x.docx", 96));
+        assertNull(ThumbnailService.derivedUrl("/home/me/.note0/storage/note0/materials/x.pdf", 96));
+    }
+}
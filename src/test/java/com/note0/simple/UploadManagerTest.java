@@ -0,0 +1,181 @@
+package com.note0.simple;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Runs UploadManager against CloudinaryStub. The pom sets -Dnote0.upload.retryDelayMs=20 and
+ * -Dnote0.upload.maxAttempts=3 for tests.
+ */
+class UploadManagerTest {
+
+    private static final long UPLOADER = 7;
+    private static final String STORED_URL = "https://res.cloudinary.com/demo/raw/upload/v1/note0/materials/notes.pdf";
+
+    @TempDir
+    Path dir;
+
+    private final RecordingMaterialDAO materialDAO = new RecordingMaterialDAO();
+    private final List<UploadManager> managers = new ArrayList<>();
+    private CloudinaryStub stub;
+
+    @AfterEach
+    void tearDown() {
+        managers.forEach(UploadManager::shutdown);
+        if (stub != null) {
+            stub.close();
+        }
+    }
+
+    @Test
+    void retriesServerErrorsAndThrottlingThenAddsTheMaterial() throws Exception {
+        stub = new CloudinaryStub(
+                CloudinaryStub.error(503, "Service unavailable"),
+                CloudinaryStub.error(429, "Rate limit exceeded"),
+                CloudinaryStub.uploaded(STORED_URL));
+        UploadManager manager = manager(dir.resolve("uploads.properties"));
+
+        UploadJob job = manager.enqueue(file("notes.pdf", 1000), "Notes", 3, UPLOADER);
+
+        awaitState(job, UploadJob.State.DONE);
+        assertEquals(3, stub.requestCount());
+        assertEquals(2, job.getAttempts());
+        assertEquals(List.of(STORED_URL), materialDAO.added);
+        // The insert happened after the successful response, not after any of the failed ones
+        assertEquals(List.of(3), materialDAO.requestsSeenWhenAdded);
+    }
+
+    @Test
+    void givesUpAfterMaxAttempts() throws Exception {
+        stub = new CloudinaryStub(CloudinaryStub.error(500, "Internal error"));
+        UploadManager manager = manager(dir.resolve("uploads.properties"));
+
+        UploadJob job = manager.enqueue(file("notes.pdf", 1000), "Notes", 3, UPLOADER);
+
+        awaitState(job, UploadJob.State.FAILED);
+        assertEquals(3, stub.requestCount());
+        assertTrue(materialDAO.added.isEmpty());
+    }
+
+    @Test
+    void doesNotRetryClientErrors() throws Exception {
+        stub = new CloudinaryStub(CloudinaryStub.error(400, "Invalid image file"));
+        UploadManager manager = manager(dir.resolve("uploads.properties"));
+
+        UploadJob job = manager.enqueue(file("notes.pdf", 1000), "Notes", 3, UPLOADER);
+
+        awaitState(job, UploadJob.State.FAILED);
+        Thread.sleep(200); // Longer than any retry delay
+        assertEquals(1, stub.requestCount());
+        assertEquals(1, job.getAttempts());
+        assertTrue(job.getError().contains("Invalid image file"), job.getError());
+        assertTrue(materialDAO.added.isEmpty());
+    }
+
+    @Test
+    void doesNotAddTheMaterialWithoutAConfirmedUrl() throws Exception {
+        stub = new CloudinaryStub(CloudinaryStub.json(200, "{}"));
+        UploadManager manager = manager(dir.resolve("uploads.properties"));
+
+        UploadJob job = manager.enqueue(file("notes.pdf", 1000), "Notes", 3, UPLOADER);
+
+        awaitState(job, UploadJob.State.FAILED);
+        assertTrue(job.getError().contains("secure_url"), job.getError());
+        assertTrue(materialDAO.added.isEmpty());
+    }
+
+    @Test
+    void pendingUploadSurvivesARestart() throws Exception {
+        CountDownLatch arrived = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        stub = new CloudinaryStub(
+                CloudinaryStub.blocked(arrived, release, CloudinaryStub.error(503, "Service unavailable")),
+                CloudinaryStub.uploaded(STORED_URL));
+        Path queueFile = dir.resolve("uploads.properties");
+        UploadManager first = manager(queueFile);
+        UploadJob queued = first.enqueue(file("notes.pdf", 1000), "Notes", 3, UPLOADER);
+        assertTrue(arrived.await(10, TimeUnit.SECONDS));
+
+        // The app closes while the upload is in flight
+        first.shutdown();
+        UploadManager second = manager(queueFile);
+        release.countDown();
+
+        List<UploadJob> restored = second.getJobs(UPLOADER);
+        assertEquals(1, restored.size());
+        UploadJob job = restored.get(0);
+        assertEquals(queued.getId(), job.getId());
+        assertEquals("Notes", job.getTitle());
+        assertEquals(UploadJob.State.QUEUED, job.getState());
+
+        second.resume(UPLOADER);
+        awaitState(job, UploadJob.State.DONE);
+        assertEquals(List.of(STORED_URL), materialDAO.added);
+        // Finished jobs are not written back to the queue file
+        assertTrue(manager(queueFile).getJobs(UPLOADER).isEmpty());
+    }
+
+    private UploadManager manager(Path queueFile) {
+        // Chunking is covered by CloudinaryServiceTest; here every file goes in one request
+        UploadManager manager = new UploadManager(new CloudinaryService(stub.cloudinaryUrl(), Long.MAX_VALUE, 64 * 1024),
+                materialDAO, queueFile);
+        managers.add(manager);
+        return manager;
+    }
+
+    private File file(String name, int size) throws IOException {
+        byte[] content = new byte[size];
+        new Random(size).nextBytes(content);
+        return Files.write(dir.resolve(name), content).toFile();
+    }
+
+    private static void awaitState(UploadJob job, UploadJob.State state) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (job.getState() != state) {
+            if (System.nanoTime() > deadline) {
+                fail("Job stayed " + job.getState() + " instead of " + state + ": " + job.getError());
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Records inserts instead of writing to a database. No file is ever stored already.
+     */
+    private class RecordingMaterialDAO extends MaterialDAO {
+        final List<String> added = Collections.synchronizedList(new ArrayList<>());
+        final List<Integer> requestsSeenWhenAdded = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public String findFilePathByContentHash(String contentHash, StorageService storageService) {
+            return null;
+        }
+
+        @Override
+        public boolean hasMaterialWithFilePath(String filePath, long uploaderId, String title) {
+            return added.contains(filePath);
+        }
+
+        @Override
+        public void addMaterial(String title, String filePath, long subjectId, long uploaderId, String contentHash) {
+            requestsSeenWhenAdded.add(stub.requestCount());
+            added.add(filePath);
+        }
+    }
+}